@@ -1,5 +1,6 @@
 plugins {
     id("java")
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 group = "io.github.gaming32"
@@ -18,6 +19,48 @@ dependencies {
     compileOnly("org.jetbrains:annotations:24.0.0")
 }
 
+// Benchmarks live in src/jmh, and are run with ./gradlew jmh. Results go to build/results/jmh.
+jmh {
+    jmhVersion.set("1.37")
+    benchmarkMode.add("thrpt")
+    profilers.add("gc")
+    resultFormat.set("JSON")
+    warmupIterations.set(3)
+    iterations.set(5)
+    fork.set(1)
+}
+
+// End-to-end load test against src/test/fake-pactl/pactl. See LoadTest for the settings it takes.
+tasks.register<JavaExec>("loadTest") {
+    group = "verification"
+    classpath = sourceSets.test.get().runtimeClasspath
+    mainClass.set("io.github.gaming32.pactlloopbackgui.LoadTest")
+    environment("FAKE_PACTL_STATE", layout.buildDirectory.dir("fake-pactl").get().asFile.absolutePath)
+    systemProperty("pactl.executable", layout.projectDirectory.file("src/test/fake-pactl/pactl").asFile.absolutePath)
+    systemProperty("pactl.backend", "process")
+    systemProperty("java.awt.headless", "true")
+    systemProperties(providers.gradlePropertiesPrefixedBy("loadTest.").get())
+    systemProperties(providers.gradlePropertiesPrefixedBy("pactl.").get())
+}
+
+// Checks NativePactlBackend against the in-process FakePulseServer, over a temporary unix socket
+val nativeBackendTest by tasks.registering(JavaExec::class) {
+    group = "verification"
+    classpath = sourceSets.test.get().runtimeClasspath
+    mainClass.set("io.github.gaming32.pactlloopbackgui.pactl.NativePactlBackendTest")
+}
+tasks.check { dependsOn(nativeBackendTest) }
+
+// Checks that two PactlClients from pactl.servers each only reach their own src/test/fake-pactl/pactl state
+val multiServerTest by tasks.registering(JavaExec::class) {
+    group = "verification"
+    classpath = sourceSets.test.get().runtimeClasspath
+    mainClass.set("io.github.gaming32.pactlloopbackgui.pactl.MultiServerTest")
+    systemProperty("pactl.executable", layout.projectDirectory.file("src/test/fake-pactl/pactl").asFile.absolutePath)
+    systemProperty("pactl.backend", "process")
+}
+tasks.check { dependsOn(multiServerTest) }
+
 val fatJar by tasks.registering(Jar::class) {
     group = "build"
 
@@ -35,3 +78,49 @@ val fatJar by tasks.registering(Jar::class) {
     duplicatesStrategy = DuplicatesStrategy.WARN
 }
 tasks.assemble.get().dependsOn(fatJar)
+
+// AppCDS archive for the fat jar, dumped at the end of a training run that answers pactl calls from the benchmark
+// fixtures. Opt-in with ./gradlew cdsArchive, since the training run needs /bin/sh, and the archive only works with the
+// JVM that dumped it, which is the project's Java toolchain. It's used with
+// java -XX:SharedArchiveFile=build/libs/pactl-loopback-gui-<version>-all.jsa -jar build/libs/pactl-loopback-gui-<version>-all.jar
+val fakePactl = layout.projectDirectory.dir("src/cds/bin")
+val javaLauncher = javaToolchains.launcherFor(java.toolchain)
+val fatJarFile = fatJar.flatMap { it.archiveFile }
+val cdsArchiveFile = fatJarFile.map { it.asFile.resolveSibling(it.asFile.nameWithoutExtension + ".jsa") }
+
+// jvmOption is resolved when the task runs, since the archive path depends on the fat jar's name
+fun Exec.runTraining(jvmOption: Provider<String>? = null) {
+    dependsOn(fatJar)
+    inputs.file(fatJarFile)
+    inputs.dir(fakePactl)
+    inputs.dir(layout.projectDirectory.dir("src/jmh/resources/fixtures"))
+    environment("PATH", fakePactl.asFile.absolutePath + File.pathSeparator + System.getenv("PATH"))
+    inputs.property("javaVersion", javaLauncher.map { it.metadata.javaRuntimeVersion })
+    // Resolved when the task runs, so that configuring the build doesn't need the toolchain
+    doFirst { executable(javaLauncher.get().executablePath.asFile.absolutePath) }
+    argumentProviders.add(CommandLineArgumentProvider {
+        listOfNotNull(jvmOption?.get()) + listOf(
+            "-Dpactl.trainingRun=true", "-Dpactl.backend=process", "-jar", fatJarFile.get().asFile.absolutePath
+        )
+    })
+}
+
+val cdsArchive by tasks.registering(Exec::class) {
+    group = "build"
+    runTraining(cdsArchiveFile.map { "-XX:ArchiveClassesAtExit=" + it.absolutePath })
+    outputs.file(cdsArchiveFile)
+}
+
+// Logs the time to first frame and first data, with and without the archive
+tasks.register("measureStartup") {
+    group = "verification"
+    dependsOn("measureStartupWithoutCds", "measureStartupWithCds")
+}
+tasks.register<Exec>("measureStartupWithoutCds") {
+    runTraining()
+}
+tasks.register<Exec>("measureStartupWithCds") {
+    dependsOn(cdsArchive)
+    runTraining(cdsArchiveFile.map { "-XX:SharedArchiveFile=" + it.absolutePath })
+    mustRunAfter("measureStartupWithoutCds")
+}
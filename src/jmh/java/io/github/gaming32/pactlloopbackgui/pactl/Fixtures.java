@@ -0,0 +1,20 @@
+package io.github.gaming32.pactlloopbackgui.pactl;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+// Recorded pactl output, from src/jmh/resources/fixtures
+final class Fixtures {
+    private Fixtures() {
+    }
+
+    static String read(String name) {
+        try (var input = Fixtures.class.getResourceAsStream("/fixtures/" + name)) {
+            return new String(Objects.requireNonNull(input, name).readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
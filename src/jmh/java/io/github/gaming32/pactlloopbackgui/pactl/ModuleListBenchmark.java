@@ -0,0 +1,44 @@
+package io.github.gaming32.pactlloopbackgui.pactl;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+// Parsing of pactl list short modules
+@State(Scope.Benchmark)
+public class ModuleListBenchmark {
+    @Param({"small", "large"})
+    public String size;
+
+    private String output;
+
+    @Setup
+    public void setup() {
+        output = Fixtures.read("modules-" + size + ".txt");
+    }
+
+    @Benchmark
+    public List<PactlModule> parseModules() throws IOException {
+        return ProcessPactlBackend.parseModules(new BufferedReader(new StringReader(output)));
+    }
+
+    @Benchmark
+    public void visitLoopbacks(Blackhole blackhole) throws IOException {
+        ProcessPactlBackend.visitModules(
+            new BufferedReader(new StringReader(output)),
+            "module-loopback"::equals,
+            module -> {
+                blackhole.consume(module);
+                return true;
+            }
+        );
+    }
+}
@@ -0,0 +1,47 @@
+package io.github.gaming32.pactlloopbackgui.pactl;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.Map;
+
+// PactlArguments.parse and toString over every module argument string in a recorded module list
+@State(Scope.Benchmark)
+public class PactlArgumentsBenchmark {
+    @Param({"small", "large"})
+    public String size;
+
+    private String[] arguments;
+    private List<Map<String, String>> parsed;
+
+    @Setup
+    public void setup() throws IOException {
+        final var modules = ProcessPactlBackend.parseModules(
+            new BufferedReader(new StringReader(Fixtures.read("modules-" + size + ".txt")))
+        );
+        parsed = modules.stream().map(PactlModule::arguments).toList();
+        arguments = parsed.stream().map(PactlArguments::toString).toArray(String[]::new);
+    }
+
+    @Benchmark
+    public void parse(Blackhole blackhole) {
+        for (final var argument : arguments) {
+            blackhole.consume(PactlArguments.parse(argument));
+        }
+    }
+
+    @Benchmark
+    public void format(Blackhole blackhole) {
+        for (final var argument : parsed) {
+            blackhole.consume(PactlArguments.toString(argument));
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package io.github.gaming32.pactlloopbackgui.pactl;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+// Decoding of pactl --format json list sinks (sources use the same parser)
+@State(Scope.Benchmark)
+public class SourceOrSinkJsonBenchmark {
+    @Param({"small", "large"})
+    public String size;
+
+    private String output;
+
+    @Setup
+    public void setup() {
+        output = Fixtures.read("sinks-" + size + ".json");
+    }
+
+    @Benchmark
+    public List<PactlSourceOrSink> parseSinks() throws IOException {
+        return PactlSourceOrSinkParser.DEFAULT.parse(new StringReader(output));
+    }
+}
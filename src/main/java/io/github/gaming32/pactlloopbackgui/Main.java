@@ -1,21 +1,175 @@
 package io.github.gaming32.pactlloopbackgui;
 
 import io.github.gaming32.pactlloopbackgui.gui.MainPanel;
+import io.github.gaming32.pactlloopbackgui.gui.ProfileMenu;
+import io.github.gaming32.pactlloopbackgui.gui.RefreshScheduler;
+import io.github.gaming32.pactlloopbackgui.pactl.Pactl;
+import io.github.gaming32.pactlloopbackgui.pactl.PactlClient;
+import io.github.gaming32.pactlloopbackgui.profile.ProfileCommand;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import java.awt.BorderLayout;
+import java.awt.GridLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
 
 public class Main {
+    private static final Logger LOGGER = LoggerFactory.getLogger(Main.class);
+
     public static final String TITLE = "PulseAudio Loopback GUI";
 
     public static void main(String[] args) {
+        // Any arguments are a profile command, which runs without the GUI
+        if (args.length > 0) {
+            System.exit(ProfileCommand.run(args, System.out, System.err));
+        }
+        if (Boolean.getBoolean("pactl.trainingRun")) {
+            SwingUtilities.invokeLater(Main::runTraining);
+            return;
+        }
+
         final var frame = new JFrame(TITLE);
-        final var panel = new MainPanel();
-        frame.add(panel);
-        frame.pack();
+        final var panels = new ArrayList<MainPanel>();
+        for (final var client : PactlClient.configured()) {
+            panels.add(new MainPanel(client));
+        }
+        final var filterField = new JTextField();
+        filterField.setToolTipText("Filter sources and sinks by description");
+        filterField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                panels.forEach(panel -> panel.setFilter(filterField.getText()));
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                panels.forEach(panel -> panel.setFilter(filterField.getText()));
+            }
 
-        new Timer(2000, e -> panel.refresh()).start();
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+            }
+        });
+        final var filterBar = new JPanel(new BorderLayout(5, 0));
+        filterBar.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
+        filterBar.add(new JLabel("Filter:"), BorderLayout.WEST);
+        filterBar.add(filterField);
+        frame.add(filterBar, BorderLayout.NORTH);
+        final var menuBar = new JMenuBar();
+        if (panels.size() == 1) {
+            frame.add(new JScrollPane(panels.get(0)));
+            menuBar.add(new ProfileMenu("Profile", panels.get(0)));
+        } else {
+            // Side by side, each scrolling on its own
+            final var servers = new JPanel(new GridLayout(1, panels.size(), 5, 0));
+            for (final var panel : panels) {
+                final var scrollPane = new JScrollPane(panel);
+                scrollPane.setBorder(BorderFactory.createTitledBorder(panel.client().toString()));
+                servers.add(scrollPane);
+                menuBar.add(new ProfileMenu("Profile: " + panel.client().name(), panel));
+            }
+            frame.add(servers);
+        }
+        frame.setJMenuBar(menuBar);
+        // Bound once on the frame rather than on each panel, since only the first panel bound to a key would get it.
+        // Every panel is switched to the same state, so they stay in step even if only some of them started out on.
+        bindToggle(frame, KeyEvent.VK_F3, "toggleHud", () -> {
+            final var visible = panels.stream().noneMatch(MainPanel::isHudVisible);
+            panels.forEach(panel -> panel.setHudVisible(visible));
+        });
+        bindToggle(frame, KeyEvent.VK_F4, "toggleMeters", () -> {
+            final var visible = panels.stream().noneMatch(MainPanel::isMetersVisible);
+            panels.forEach(panel -> panel.setMetersVisible(visible));
+        });
+        // An iconified frame's panels still count as showing, so their captures would otherwise keep running
+        frame.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowIconified(WindowEvent e) {
+                panels.forEach(panel -> panel.setMetersPaused(true));
+            }
 
+            @Override
+            public void windowDeiconified(WindowEvent e) {
+                panels.forEach(panel -> panel.setMetersPaused(false));
+            }
+        });
+        frame.pack();
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        // Shown before anything has been loaded, with the panel showing a loading state until the first refresh is done
         frame.setVisible(true);
+
+        panels.forEach(panel -> connect(frame, panel));
+    }
+
+    private static void bindToggle(JFrame frame, int key, String name, Runnable toggle) {
+        final var rootPane = frame.getRootPane();
+        rootPane.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke(key, 0), name);
+        rootPane.getActionMap().put(name, new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                toggle.run();
+            }
+        });
+    }
+
+    // Every server has its own subscription and poller, and its refreshes are applied to its own panel as they
+    // complete, so a slow or dead server doesn't hold up the others
+    private static void connect(JFrame frame, MainPanel panel) {
+        // Polling is only used as a fallback for when pactl subscribe isn't available
+        final var poller = new RefreshScheduler(panel::refresh);
+        poller.watch(frame);
+        try {
+            panel.client().subscribe(
+                event -> SwingUtilities.invokeLater(() -> panel.handleEvent(event)),
+                () -> SwingUtilities.invokeLater(() -> {
+                    panel.refresh();
+                    poller.start();
+                })
+            );
+        } catch (IOException e) {
+            LOGGER.error("Failed to subscribe to events from {}, falling back to polling", panel.client(), e);
+            poller.start();
+        }
+        // Started after subscribing, so that nothing is missed in between
+        panel.refresh();
+    }
+
+    // Goes through startup without needing a display, painting the panel offscreen before and after the first refresh,
+    // and then exits. Used to dump the AppCDS archive for the fat jar.
+    private static void runTraining() {
+        final var panel = new MainPanel(Pactl.defaultClient());
+        final var scrollPane = new JScrollPane(panel);
+        scrollPane.setSize(panel.getPreferredScrollableViewportSize());
+        scrollPane.validate();
+        paintOffscreen(scrollPane);
+        panel.refresh().whenCompleteAsync((changed, ex) -> {
+            if (ex != null) {
+                LOGGER.error("Training run failed to refresh", ex);
+            }
+            scrollPane.validate();
+            paintOffscreen(scrollPane);
+            System.exit(ex != null ? 1 : 0);
+        }, SwingUtilities::invokeLater);
+    }
+
+    private static void paintOffscreen(JComponent component) {
+        final var image = new BufferedImage(
+            component.getWidth(), component.getHeight(), BufferedImage.TYPE_INT_ARGB
+        );
+        final var g = image.createGraphics();
+        try {
+            component.paint(g);
+        } finally {
+            g.dispose();
+        }
     }
 }
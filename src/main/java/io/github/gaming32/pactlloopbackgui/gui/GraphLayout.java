@@ -0,0 +1,248 @@
+package io.github.gaming32.pactlloopbackgui.gui;
+
+import io.github.gaming32.pactlloopbackgui.pactl.PactlLinks;
+import io.github.gaming32.pactlloopbackgui.pactl.PactlSnapshot;
+import io.github.gaming32.pactlloopbackgui.pactl.PactlSnapshotDiff;
+import io.github.gaming32.pactlloopbackgui.pactl.PactlSourceOrSink;
+import org.jetbrains.annotations.Nullable;
+
+import java.awt.FontMetrics;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.geom.Line2D;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+// Positions of every box and connector, in unscaled coordinates. Retained between paints, and only recomputed when the
+// snapshot, font, width, or filter changes.
+final class GraphLayout {
+    static final int MARGIN = 10;
+    static final int SPACING = 10;
+    static final int LINE_WIDTH = 3;
+    // The narrowest gap left between the two columns for links to be drawn in
+    private static final int MIN_LINK_SPACE = 60;
+
+    final FontMetrics metrics;
+    final int width;
+    // The smallest size that fits every box without the columns overlapping
+    final int contentWidth;
+    final int contentHeight;
+    final int boxHeight;
+    final int textY;
+    final Map<Integer, Box> sources;
+    final Map<Integer, Box> sinks;
+
+    // Hit testing index. Every box is in its own row of rowPitch height, so connectors are found by row number, and each
+    // link is listed in every row its line passes through.
+    private final int rowPitch;
+    private final Box[] sourceRows;
+    private final Box[] sinkRows;
+    private final List<List<LinkSegment>> linkRows;
+
+    private GraphLayout(
+        FontMetrics metrics, int width, int contentWidth, Map<Integer, Box> sources, Map<Integer, Box> sinks,
+        PactlLinks links
+    ) {
+        this.metrics = metrics;
+        this.width = width;
+        this.contentWidth = contentWidth;
+        this.boxHeight = boxHeight(metrics);
+        this.textY = boxHeight / 2 + (metrics.getAscent() - metrics.getDescent() - metrics.getLeading()) / 2;
+        this.sources = sources;
+        this.sinks = sinks;
+
+        rowPitch = boxHeight + SPACING;
+        sourceRows = sources.values().toArray(Box[]::new);
+        sinkRows = sinks.values().toArray(Box[]::new);
+        final var rowCount = Math.max(sourceRows.length, sinkRows.length);
+        contentHeight = 2 * MARGIN + rowCount * rowPitch - (rowCount > 0 ? SPACING : 0);
+        linkRows = new ArrayList<>(rowCount);
+        for (var i = 0; i < rowCount; i++) {
+            linkRows.add(new ArrayList<>());
+        }
+        links.forEach((source, sink, module) -> {
+            final var sourceBox = sources.get(source);
+            final var sinkBox = sinks.get(sink);
+            if (sourceBox == null || sinkBox == null) return;
+            final var segment = new LinkSegment(
+                new PactlSnapshotDiff.Link(source, sink),
+                new Line2D.Float(
+                    linkStartX(sourceBox), (float) sourceBox.connector.getCenterY(),
+                    linkEndX(sinkBox), (float) sinkBox.connector.getCenterY()
+                )
+            );
+            final var bounds = segment.line.getBounds();
+            final var lastRow = Math.min(row(bounds.y + bounds.height + LINE_WIDTH), rowCount - 1);
+            for (var row = Math.max(row(bounds.y - LINE_WIDTH), 0); row <= lastRow; row++) {
+                linkRows.get(row).add(segment);
+            }
+        });
+    }
+
+    // Only devices accepted by filter are laid out. Text is measured through textWidth, so that callers can avoid
+    // re-measuring descriptions that haven't changed.
+    static GraphLayout compute(
+        PactlSnapshot snapshot, FontMetrics metrics, int width,
+        ToIntFunction<String> textWidth, Predicate<PactlSourceOrSink> filter
+    ) {
+        final var sources = snapshot.sources().values().stream().filter(filter).toList();
+        final var sinks = snapshot.sinks().values().stream().filter(filter).toList();
+        final var widestSource = longestName(sources, textWidth);
+        final var widestSink = longestName(sinks, textWidth);
+        final var contentWidth = 2 * (MARGIN + 12) + widestSource + widestSink + MIN_LINK_SPACE;
+        final var columnsWidth = Math.max(width, contentWidth);
+        return new GraphLayout(
+            metrics, width, contentWidth,
+            layoutColumn(sources, metrics, widestSource, MARGIN, false),
+            layoutColumn(sinks, metrics, widestSink, columnsWidth - MARGIN - 12, true),
+            snapshot.links()
+        );
+    }
+
+    private int row(int y) {
+        return Math.floorDiv(y - MARGIN, rowPitch);
+    }
+
+    @Nullable
+    Box sourceAt(Point point) {
+        return boxAt(sourceRows, point);
+    }
+
+    @Nullable
+    Box sinkAt(Point point) {
+        return boxAt(sinkRows, point);
+    }
+
+    @Nullable
+    private Box boxAt(Box[] rows, Point point) {
+        final var row = row(point.y);
+        if (row < 0 || row >= rows.length) {
+            return null;
+        }
+        final var box = rows[row];
+        return box.connector.contains(point) ? box : null;
+    }
+
+    @Nullable
+    PactlSnapshotDiff.Link linkAt(Point point) {
+        final var row = row(point.y);
+        if (row < 0 || row >= linkRows.size()) {
+            return null;
+        }
+        PactlSnapshotDiff.Link closest = null;
+        var closestDistance = (double) LINE_WIDTH * LINE_WIDTH;
+        for (final var segment : linkRows.get(row)) {
+            final var distance = segment.line.ptSegDistSq(point);
+            if (distance <= closestDistance) {
+                closest = segment.link;
+                closestDistance = distance;
+            }
+        }
+        return closest;
+    }
+
+    // The boxes in rows intersecting area, in row order
+    List<Box> sourcesIn(Rectangle area) {
+        return boxesIn(sourceRows, area);
+    }
+
+    List<Box> sinksIn(Rectangle area) {
+        return boxesIn(sinkRows, area);
+    }
+
+    private List<Box> boxesIn(Box[] rows, Rectangle area) {
+        final var firstRow = Math.max(row(area.y), 0);
+        final var lastRow = Math.min(row(area.y + area.height), rows.length - 1);
+        return firstRow > lastRow ? List.of() : List.of(rows).subList(firstRow, lastRow + 1);
+    }
+
+    // Every link whose line passes through a row intersecting area
+    Set<PactlSnapshotDiff.Link> linksIn(Rectangle area) {
+        final var result = new LinkedHashSet<PactlSnapshotDiff.Link>();
+        final var lastRow = Math.min(row(area.y + area.height), linkRows.size() - 1);
+        for (var row = Math.max(row(area.y), 0); row <= lastRow; row++) {
+            for (final var segment : linkRows.get(row)) {
+                result.add(segment.link);
+            }
+        }
+        return result;
+    }
+
+    int rowPitch() {
+        return rowPitch;
+    }
+
+    private static int boxHeight(FontMetrics metrics) {
+        return metrics.getHeight() + 12;
+    }
+
+    private static Map<Integer, Box> layoutColumn(
+        Collection<PactlSourceOrSink> devices, FontMetrics metrics, int widestName, int x, boolean rightAlign
+    ) {
+        final var boxes = new LinkedHashMap<Integer, Box>();
+        final var boxHeight = boxHeight(metrics);
+        if (rightAlign) {
+            x -= widestName;
+        }
+        var y = MARGIN;
+        for (final var device : devices) {
+            final var bounds = new Rectangle(x, y, widestName + 12, boxHeight);
+            final var connector = new Rectangle(
+                x - boxHeight / 4 + (rightAlign ? 0 : widestName + 12),
+                y + boxHeight / 4,
+                boxHeight / 2, boxHeight / 2
+            );
+            boxes.put(device.index(), new Box(device, bounds, connector));
+            y += boxHeight + SPACING;
+        }
+        return boxes;
+    }
+
+    private static int longestName(Collection<PactlSourceOrSink> devices, ToIntFunction<String> textWidth) {
+        return devices.stream()
+            .mapToInt(s -> textWidth.applyAsInt(s.description()))
+            .max()
+            .orElse(0);
+    }
+
+    int linkStartX(Box source) {
+        return (int) (source.connector.getCenterX() + boxHeight / 8.0);
+    }
+
+    int linkEndX(Box sink) {
+        return (int) (sink.connector.getCenterX() - boxHeight / 8.0);
+    }
+
+    // The area covered by a link line, including its stroke
+    @Nullable
+    Rectangle linkBounds(int source, int sink) {
+        final var sourceBox = sources.get(source);
+        final var sinkBox = sinks.get(sink);
+        if (sourceBox == null || sinkBox == null) {
+            return null;
+        }
+        final var bounds = new Rectangle(linkStartX(sourceBox), (int) sourceBox.connector.getCenterY(), 0, 0);
+        bounds.add(linkEndX(sinkBox), (int) sinkBox.connector.getCenterY());
+        bounds.grow(LINE_WIDTH, LINE_WIDTH);
+        return bounds;
+    }
+
+    private record LinkSegment(PactlSnapshotDiff.Link link, Line2D line) {
+    }
+
+    record Box(PactlSourceOrSink device, Rectangle bounds, Rectangle connector) {
+        // The area covered by the box and its connector
+        Rectangle paintBounds() {
+            final var result = bounds.union(connector);
+            result.grow(1, 1);
+            return result;
+        }
+    }
+}
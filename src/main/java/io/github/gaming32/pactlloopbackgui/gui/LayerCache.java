@@ -0,0 +1,106 @@
+package io.github.gaming32.pactlloopbackgui.gui;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.function.Consumer;
+
+// An offscreen image of everything that doesn't change with mouse movement. Only the visible area is kept, and only
+// invalidated regions are redrawn. Scrolling shifts the existing image where it can, so only the newly exposed strips
+// need to be drawn.
+final class LayerCache {
+    private BufferedImage image;
+    private double deviceScale;
+    private final Rectangle area = new Rectangle();
+    private final Rectangle dirty = new Rectangle();
+
+    // bounds are in component coordinates
+    void invalidate(Rectangle bounds) {
+        if (dirty.isEmpty()) {
+            dirty.setBounds(bounds);
+        } else {
+            dirty.add(bounds);
+        }
+    }
+
+    void invalidateAll() {
+        image = null;
+    }
+
+    // Draws the cached image of visible onto g, first redrawing any invalid regions with renderer. visible and renderer
+    // are in component coordinates.
+    void paint(Graphics2D g, Rectangle visible, Consumer<Graphics2D> renderer) {
+        final var scale = g.getTransform().getScaleX();
+        final var imageWidth = (int) Math.ceil(visible.width * scale);
+        final var imageHeight = (int) Math.ceil(visible.height * scale);
+        if (imageWidth <= 0 || imageHeight <= 0) return;
+
+        if (image == null || scale != deviceScale || image.getWidth() != imageWidth || image.getHeight() != imageHeight) {
+            image = new BufferedImage(imageWidth, imageHeight, BufferedImage.TYPE_INT_ARGB_PRE);
+            deviceScale = scale;
+            area.setBounds(visible);
+            dirty.setBounds(visible);
+        } else if (!area.equals(visible)) {
+            scroll(visible);
+        }
+
+        if (!dirty.isEmpty()) {
+            final var redraw = dirty.intersection(area);
+            if (!redraw.isEmpty()) {
+                final var layerGraphics = image.createGraphics();
+                try {
+                    layerGraphics.scale(scale, scale);
+                    layerGraphics.translate(-area.x, -area.y);
+                    layerGraphics.clip(redraw);
+                    layerGraphics.setComposite(AlphaComposite.Clear);
+                    layerGraphics.fill(redraw);
+                    layerGraphics.setComposite(AlphaComposite.SrcOver);
+                    layerGraphics.setFont(g.getFont());
+                    renderer.accept(layerGraphics);
+                } finally {
+                    layerGraphics.dispose();
+                }
+            }
+            dirty.setSize(0, 0);
+        }
+
+        final var transform = g.getTransform();
+        g.scale(1 / scale, 1 / scale);
+        g.drawImage(image, (int) Math.round(area.x * scale), (int) Math.round(area.y * scale), null);
+        g.setTransform(transform);
+    }
+
+    // Moves the image to cover visible, which is the same size as the current area
+    private void scroll(Rectangle visible) {
+        final var dx = (area.x - visible.x) * deviceScale;
+        final var dy = (area.y - visible.y) * deviceScale;
+        final var overlap = area.intersection(visible);
+        // Fractional device offsets can't be copied exactly, so those redraw everything
+        if (overlap.isEmpty() || dx != Math.rint(dx) || dy != Math.rint(dy)) {
+            area.setBounds(visible);
+            invalidate(visible);
+            return;
+        }
+
+        final var layerGraphics = image.createGraphics();
+        try {
+            layerGraphics.copyArea(0, 0, image.getWidth(), image.getHeight(), (int) dx, (int) dy);
+        } finally {
+            layerGraphics.dispose();
+        }
+        area.setBounds(visible);
+        if (overlap.width < visible.width) {
+            invalidate(new Rectangle(
+                overlap.x == visible.x ? overlap.x + overlap.width : visible.x, visible.y,
+                visible.width - overlap.width, visible.height
+            ));
+        }
+        if (overlap.height < visible.height) {
+            invalidate(new Rectangle(
+                visible.x, overlap.y == visible.y ? overlap.y + overlap.height : visible.y,
+                visible.width, visible.height - overlap.height
+            ));
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package io.github.gaming32.pactlloopbackgui.gui;
+
+import io.github.gaming32.pactlloopbackgui.pactl.LevelMeter;
+import io.github.gaming32.pactlloopbackgui.pactl.PactlClient;
+import io.github.gaming32.pactlloopbackgui.pactl.PactlSourceOrSink;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.geom.Rectangle2D;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// Peak and RMS meters along the bottom edge of the boxes in view. A device is only captured while its box is visible,
+// and a meter is only repainted when what it would draw has changed. Captures that exit, such as when their device
+// goes away, are restarted with a backoff, and their meters fall to nothing in the meantime.
+final class LevelMeters {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LevelMeters.class);
+
+    // The quietest level shown, at the left end of the meter
+    private static final float FLOOR_DB = -60;
+    // How fast the meters fall once the level drops, in fractions of the meter per second
+    private static final float FALL_PER_SECOND = 1 / 1.5f;
+    // How long the peak marker stays red after a sample reaches full scale
+    private static final float CLIP_HOLD_SECONDS = 1;
+    private static final Color RMS_COLOR = new Color(0x30C030);
+    private static final Color PEAK_COLOR = Color.YELLOW;
+    private static final Color CLIP_COLOR = Color.RED;
+    // A capture that exits on its own is restarted after a delay, doubling from the first up to the longest for as long
+    // as they keep exiting. A capture that ran for at least the longest delay starts again from the first.
+    private static final long FIRST_RESTART_DELAY_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long MAX_RESTART_DELAY_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    private final PactlClient client;
+    private final double scale;
+    private final Map<Integer, Meter> sources = new HashMap<>();
+    private final Map<Integer, Meter> sinks = new HashMap<>();
+    private final Rectangle2D.Float paintRect = new Rectangle2D.Float();
+    private int frame;
+    // Set once parec can't be started at all, so that it isn't retried for every device
+    private volatile boolean failed;
+
+    // scale is the size of a layout unit in pixels, which is how finely the meters are drawn
+    LevelMeters(PactlClient client, double scale) {
+        this.client = client;
+        this.scale = scale;
+    }
+
+    // Starts capturing the devices that came into view, stops capturing the ones that left it, and takes the latest
+    // levels of the rest. repaint is given the bounds of every meter that needs to be drawn again, in layout coordinates.
+    void update(
+        Collection<GraphLayout.Box> visibleSources, Collection<GraphLayout.Box> visibleSinks, float elapsedSeconds,
+        Consumer<Rectangle> repaint
+    ) {
+        frame++;
+        update(sources, visibleSources, false, elapsedSeconds, repaint);
+        update(sinks, visibleSinks, true, elapsedSeconds, repaint);
+    }
+
+    private void update(
+        Map<Integer, Meter> meters, Collection<GraphLayout.Box> visible, boolean sink, float elapsedSeconds,
+        Consumer<Rectangle> repaint
+    ) {
+        final var fall = FALL_PER_SECOND * elapsedSeconds;
+        final var now = System.nanoTime();
+        for (final var box : visible) {
+            var meter = meters.get(box.device().index());
+            if (meter != null && !meter.device.name().equals(box.device().name())) {
+                meter.close();
+                meter = null;
+            }
+            if (meter == null) {
+                if (failed) continue;
+                meter = new Meter(box.device(), now);
+                meters.put(box.device().index(), meter);
+            }
+            meter.frame = frame;
+
+            var capture = meter.capture;
+            if (capture != null && !capture.isAlive()) {
+                meter.exited(capture, now);
+                capture = null;
+            }
+            if (capture == null && !meter.starting && now - meter.restartAt >= 0 && !failed) {
+                start(meter, sink);
+            }
+            final var levels = capture != null ? capture.take() : 0L;
+            meter.peak = Math.max(fraction(LevelMeter.peak(levels)), Math.max(meter.peak - fall, 0));
+            meter.rms = Math.max(fraction(LevelMeter.rms(levels)), Math.max(meter.rms - fall, 0));
+            meter.clipHold = LevelMeter.peak(levels) >= 1 ? CLIP_HOLD_SECONDS : meter.clipHold - elapsedSeconds;
+            final var clipped = meter.clipHold > 0;
+
+            final var bounds = bounds(box);
+            final var pixels = (float) (bounds.width * scale);
+            final var peakPixels = Math.round(meter.peak * pixels);
+            final var rmsPixels = Math.round(meter.rms * pixels);
+            if (peakPixels != meter.drawnPeak || rmsPixels != meter.drawnRms || clipped != meter.drawnClipped) {
+                meter.drawnPeak = peakPixels;
+                meter.drawnRms = rmsPixels;
+                meter.drawnClipped = clipped;
+                repaint.accept(bounds);
+            }
+        }
+        meters.values().removeIf(meter -> {
+            if (meter.frame == frame) return false;
+            meter.close();
+            return true;
+        });
+    }
+
+    // Started on the client's workers, since starting a process can take long enough to be noticed when many devices
+    // scroll into view at once
+    private void start(Meter meter, boolean sink) {
+        meter.starting = true;
+        client.supply(() -> client.openLevelMeter(meter.device, sink)).whenComplete((capture, ex) -> {
+            meter.startedAt = System.nanoTime();
+            if (ex != null) {
+                if (!failed) {
+                    failed = true;
+                    LOGGER.error("Failed to start level meter capture on {}, disabling level meters", client, ex);
+                }
+                meter.starting = false;
+                return;
+            }
+            // Set before starting is cleared, so that update never sees neither and starts a second capture
+            meter.capture = capture;
+            meter.starting = false;
+            if (meter.closed) {
+                capture.close();
+            }
+        });
+    }
+
+    // Stops every capture
+    void close() {
+        sources.values().forEach(Meter::close);
+        sinks.values().forEach(Meter::close);
+        sources.clear();
+        sinks.clear();
+    }
+
+    // g must be in layout coordinates
+    void paint(Graphics2D g, Collection<GraphLayout.Box> visibleSources, Collection<GraphLayout.Box> visibleSinks) {
+        paint(g, sources, visibleSources);
+        paint(g, sinks, visibleSinks);
+    }
+
+    private void paint(Graphics2D g, Map<Integer, Meter> meters, Collection<GraphLayout.Box> visible) {
+        for (final var box : visible) {
+            final var meter = meters.get(box.device().index());
+            if (meter == null || meter.peak == 0) continue;
+            final var bounds = bounds(box);
+            g.setColor(RMS_COLOR);
+            paintRect.setRect(bounds.x, bounds.y, meter.rms * bounds.width, bounds.height);
+            g.fill(paintRect);
+            g.setColor(meter.drawnClipped ? CLIP_COLOR : PEAK_COLOR);
+            paintRect.setRect(Math.max(bounds.x + meter.peak * bounds.width - 1, bounds.x), bounds.y, 1, bounds.height);
+            g.fill(paintRect);
+        }
+    }
+
+    // The bottom edge of the box's border, between its sides
+    static Rectangle bounds(GraphLayout.Box box) {
+        final var bounds = box.bounds();
+        return new Rectangle(bounds.x + 3, bounds.y + bounds.height - 3, bounds.width - 6, 3);
+    }
+
+    // Where level goes on the meter, from 0 at FLOOR_DB to 1 at full scale
+    private static float fraction(float level) {
+        if (level <= 0) {
+            return 0;
+        }
+        final var db = 20 * (float) Math.log10(level);
+        return Math.min(Math.max((db - FLOOR_DB) / -FLOOR_DB, 0), 1);
+    }
+
+    private static final class Meter {
+        final PactlSourceOrSink device;
+        @Nullable
+        volatile LevelMeter capture;
+        volatile boolean closed;
+        volatile boolean starting;
+        volatile long startedAt;
+        int frame;
+
+        // When the capture may next be restarted, and how long the wait after the next exit is
+        long restartAt;
+        long restartDelay = FIRST_RESTART_DELAY_NANOS;
+
+        // Both are fractions of the meter, falling at FALL_PER_SECOND
+        float peak;
+        float rms;
+        float clipHold;
+
+        int drawnPeak;
+        int drawnRms;
+        boolean drawnClipped;
+
+        Meter(PactlSourceOrSink device, long now) {
+            this.device = device;
+            restartAt = now;
+        }
+
+        // Called on the first update that finds the capture has exited
+        void exited(LevelMeter exited, long now) {
+            exited.close();
+            capture = null;
+            if (now - startedAt >= MAX_RESTART_DELAY_NANOS) {
+                restartDelay = FIRST_RESTART_DELAY_NANOS;
+            }
+            LOGGER.warn(
+                "Level meter capture on {} exited, restarting it in {}s", device.name(),
+                TimeUnit.NANOSECONDS.toSeconds(restartDelay)
+            );
+            restartAt = now + restartDelay;
+            restartDelay = Math.min(restartDelay * 2, MAX_RESTART_DELAY_NANOS);
+        }
+
+        void close() {
+            closed = true;
+            final var capture = this.capture;
+            if (capture != null) {
+                capture.close();
+            }
+        }
+    }
+}
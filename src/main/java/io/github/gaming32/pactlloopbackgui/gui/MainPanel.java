@@ -1,11 +1,17 @@
 package io.github.gaming32.pactlloopbackgui.gui;
 
 import io.github.gaming32.pactlloopbackgui.Main;
-import io.github.gaming32.pactlloopbackgui.pactl.Pactl;
+import io.github.gaming32.pactlloopbackgui.metrics.Metrics;
+import io.github.gaming32.pactlloopbackgui.metrics.RollingHistogram;
+import io.github.gaming32.pactlloopbackgui.pactl.LoopbackLatency;
 import io.github.gaming32.pactlloopbackgui.pactl.PactlArguments;
+import io.github.gaming32.pactlloopbackgui.pactl.PactlClient;
+import io.github.gaming32.pactlloopbackgui.pactl.PactlEvent;
 import io.github.gaming32.pactlloopbackgui.pactl.PactlModule;
-import io.github.gaming32.pactlloopbackgui.pactl.PactlSourceOrSink;
-import org.apache.commons.io.function.IOSupplier;
+import io.github.gaming32.pactlloopbackgui.pactl.PactlOp;
+import io.github.gaming32.pactlloopbackgui.pactl.PactlSnapshot;
+import io.github.gaming32.pactlloopbackgui.pactl.PactlSnapshotDiff;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -13,6 +19,8 @@ import javax.swing.*;
 import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Dimension;
+import java.awt.DisplayMode;
+import java.awt.Font;
 import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
@@ -22,107 +30,203 @@ import java.awt.RenderingHints;
 import java.awt.Stroke;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.function.Function;
-import java.util.stream.Collectors;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
-public class MainPanel extends JComponent {
+public class MainPanel extends JComponent implements Scrollable {
     private static final Logger LOGGER = LoggerFactory.getLogger(MainPanel.class);
 
     private static final double SCALE = 2;
+    private static final Dimension VIEWPORT_SIZE = new Dimension(854, 480);
+    // Enough for every description on a large setup, while still bounding the cache if descriptions keep changing
+    private static final int MAX_TEXT_WIDTHS = 4096;
     private static final Stroke BASE_STROKE = new BasicStroke();
     private static final Stroke LINE_STROKE = new BasicStroke(3, BasicStroke.CAP_ROUND, BasicStroke.JOIN_MITER);
 
-    private Map<Integer, PactlSourceOrSink> sources = loadSourcesOrSinks(Pactl::listSources);
-    private Map<Integer, PactlSourceOrSink> sinks = loadSourcesOrSinks(Pactl::listSinks);
-    private Map<Integer, Map<Integer, PactlModule>> links = loadLinks();
+    private static final Executor EDT_EXECUTOR = SwingUtilities::invokeLater;
 
-    private Map<Integer, Rectangle> sourcePoints = new HashMap<>();
-    private Map<Integer, Rectangle> sinkPoints = new HashMap<>();
+    // The latency_msec of new links, and how far a link's measured latency may exceed its latency_msec before it's
+    // flagged. module-loopback itself defaults to 200ms when latency_msec is missing.
+    private static final int DEFAULT_LATENCY_MSEC = Integer.getInteger("pactl.defaultLatency", 20);
+    private static final int MODULE_DEFAULT_LATENCY_MSEC = 200;
+    private static final int LATENCY_DRIFT_THRESHOLD_MSEC = Integer.getInteger("pactl.latencyDriftThreshold", 20);
+    private static final int LATENCY_POLL_INTERVAL = Integer.getInteger("pactl.latencyPollInterval", 1000);
+    // Level meters are updated at most this often, and never faster than the display refreshes. At least 1, since it
+    // divides the timer delay.
+    private static final int MAX_METER_FPS = Math.max(Integer.getInteger("pactl.meterFps", 60), 1);
+
+    private static final RollingHistogram REFRESH_TIME = Metrics.timer("gui.refresh.all");
+    private static final RollingHistogram REFRESH_SOURCES_TIME = Metrics.timer("gui.refresh.sources");
+    private static final RollingHistogram REFRESH_SINKS_TIME = Metrics.timer("gui.refresh.sinks");
+    private static final RollingHistogram REFRESH_LINKS_TIME = Metrics.timer("gui.refresh.links");
+    private static final RollingHistogram PAINT_TIME = Metrics.timer("gui.paint");
+    private static final RollingHistogram STATIC_LAYER_TIME = Metrics.timer("gui.paint.staticLayer");
+    private static final RollingHistogram REFRESH_LATENCY_TIME = Metrics.timer("gui.refresh.latency");
+
+    // Every server has its own panel, with its own snapshot and refreshes
+    private final PactlClient client;
+
+    // Filled in by the first refresh, so that the window can be shown before pactl has been run
+    private PactlSnapshot snapshot = PactlSnapshot.EMPTY;
+    private boolean loading = true;
+    private boolean painted;
+
+    private final Set<PactlSnapshotDiff.Link> pendingLinks = new HashSet<>();
+    private final Set<Integer> pendingUnloads = new HashSet<>();
+
+    // Ctrl-clicked connectors. Dragging from or onto a selected connector links every selected device at that end.
+    private final Set<Integer> selectedSources = new LinkedHashSet<>();
+    private final Set<Integer> selectedSinks = new LinkedHashSet<>();
+
+    private final Set<PactlEvent.Facility> pendingRefresh = EnumSet.noneOf(PactlEvent.Facility.class);
+    // A part fetched by a full refresh or on its own is only applied if it's newer than what's shown, and isn't just
+    // the part its fetch started from, which is also what a failed fetch falls back to
+    private final RefreshGeneration sourcesGeneration = new RefreshGeneration();
+    private final RefreshGeneration sinksGeneration = new RefreshGeneration();
+    private final RefreshGeneration linksGeneration = new RefreshGeneration();
+
+    private String filter = "";
+
+    @Nullable
+    private GraphLayout layout;
+    private final Map<String, Integer> textWidths = new HashMap<>();
+    @Nullable
+    private Font textWidthsFont;
+
+    private final LayerCache staticLayer = new LayerCache();
+
+    // Toggled with F3, through Main
+    private boolean hudVisible;
+    private final Timer hudTimer = new Timer(1000, e -> repaint());
+
+    // Measured latency of each loopback module in microseconds, polled while the panel is showing
+    private Map<Integer, Long> latencies = Map.of();
+    private boolean latencyRefreshing;
+    private final Timer latencyTimer = new Timer(LATENCY_POLL_INTERVAL, e -> refreshLatencies());
+
+    // Toggled with F4, through Main. Only the devices in view are captured, and only while the panel is showing and
+    // not paused. Main pauses them while the window is iconified, where the panel still counts as showing.
+    private boolean metersVisible;
+    private boolean metersPaused;
+    private final LevelMeters levelMeters;
+    private final Timer meterTimer = new Timer(1000 / MAX_METER_FPS, e -> updateMeters());
+    private long lastMeterUpdate;
 
     private int start = -1;
-    private Point mousePos = new Point();
+    private final Point mousePos = new Point();
+    @Nullable
+    private GraphLayout.Box hovered;
+    private boolean hoveredIsSink;
+    @Nullable
+    private PactlSnapshotDiff.Link hoveredLink;
 
-    public MainPanel() {
+    public MainPanel(PactlClient client) {
+        this.client = client;
+        levelMeters = new LevelMeters(client, SCALE);
         addMouseListener(new MouseAdapter() {
             @Override
             public void mousePressed(MouseEvent e) {
-                start = findPoint(e, sourcePoints);
+                if (e.isPopupTrigger()) {
+                    start = -1;
+                    showLinkMenu(e);
+                    return;
+                }
+                start = e.isControlDown() ? -1 : indexOf(currentLayout().sourceAt(layoutPoint(e)));
             }
 
             @Override
             public void mouseReleased(MouseEvent e) {
-                final var end = findPoint(e, sinkPoints);
-                if (end != -1) {
-                    try {
-                        Pactl.loadModule("module-loopback", Map.of(
-                            "latency_msec", "20",
-                            "source", Integer.toString(start),
-                            "sink", Integer.toString(end)
-                        ));
-                        refreshLinks();
-                    } catch (IOException ex) {
-                        LOGGER.error("Failed to create loopback module", ex);
-                        JOptionPane.showMessageDialog(
-                            MainPanel.this,
-                            "Failed to create loopback module",
-                            Main.TITLE,
-                            JOptionPane.ERROR_MESSAGE
-                        );
-                    }
+                if (e.isPopupTrigger()) {
+                    showLinkMenu(e);
                 }
+                final var end = indexOf(currentLayout().sinkAt(layoutPoint(e)));
+                if (start != -1 && end != -1) {
+                    link(
+                        withSelection(start, selectedSources, currentLayout().sources),
+                        withSelection(end, selectedSinks, currentLayout().sinks)
+                    );
+                }
+                repaintDragLine();
                 start = -1;
             }
 
             @Override
             public void mouseClicked(MouseEvent e) {
-                if (e.getClickCount() != 2) return;
-                final var source = findPoint(e, sourcePoints);
-                final var sourceLinks = links.remove(source);
-                if (sourceLinks == null) return;
-
-                var failed = new ArrayList<String>();
-                for (final var link : sourceLinks.entrySet()) {
-                    try {
-                        Pactl.unloadModule(link.getValue().index());
-                    } catch (IOException ex) {
-                        LOGGER.error("Failed to unload module {}", link.getValue(), ex);
-                        failed.add(sinks.get(link.getKey()).description());
+                final var point = layoutPoint(e);
+                final var source = currentLayout().sourceAt(point);
+                final var sink = source == null ? currentLayout().sinkAt(point) : null;
+                if (e.getClickCount() == 1) {
+                    if (e.isControlDown()) {
+                        if (source != null) {
+                            toggleSelected(selectedSources, source);
+                        } else if (sink != null) {
+                            toggleSelected(selectedSinks, sink);
+                        }
+                    } else if (source == null && sink == null) {
+                        clearSelection();
                     }
+                    return;
                 }
-                if (!failed.isEmpty()) {
-                    JOptionPane.showMessageDialog(
-                        MainPanel.this,
-                        "Failed to unlink the following sinks: " + String.join(", ", failed),
-                        Main.TITLE,
-                        JOptionPane.ERROR_MESSAGE
-                    );
+                if (e.getClickCount() != 2) return;
+                if (source != null) {
+                    final var links = new ArrayList<PactlSnapshotDiff.Link>();
+                    for (final var selected : withSelection(
+                        source.device().index(), selectedSources, currentLayout().sources
+                    )) {
+                        snapshot.links().forEachOfSource(
+                            selected, (linkedSource, linkedSink, module) ->
+                                links.add(new PactlSnapshotDiff.Link(linkedSource, linkedSink))
+                        );
+                    }
+                    unlink(links);
+                    return;
                 }
-                if (failed.size() != sourceLinks.size()) {
-                    refreshLinks();
+                final var link = currentLayout().linkAt(point);
+                if (link != null) {
+                    unlink(List.of(link));
                 }
             }
 
-            private static int findPoint(MouseEvent event, Map<Integer, Rectangle> points) {
-                for (final var point : points.entrySet()) {
-                    if (point.getValue().contains(event.getX() / SCALE, event.getY() / SCALE)) {
-                        return point.getKey();
-                    }
-                }
-                return -1;
+            private void showLinkMenu(MouseEvent e) {
+                final var link = currentLayout().linkAt(layoutPoint(e));
+                final var module = link != null ? moduleOf(link) : null;
+                if (module == null) return;
+                final var menu = new JPopupMenu();
+                menu.add("Set Latency...").addActionListener(ev -> promptLatency(link, module));
+                menu.add("Unlink").addActionListener(ev -> unlink(List.of(link)));
+                menu.show(MainPanel.this, e.getX(), e.getY());
+            }
+
+            private static int indexOf(@Nullable GraphLayout.Box box) {
+                return box != null ? box.device().index() : -1;
+            }
+
+            private static Point layoutPoint(MouseEvent event) {
+                return new Point((int) (event.getX() / SCALE), (int) (event.getY() / SCALE));
             }
         });
         addMouseMotionListener(new MouseAdapter() {
             @Override
             public void mouseMoved(MouseEvent e) {
-                mousePos = new Point((int) (e.getX() / SCALE), (int) (e.getY() / SCALE));
-                repaint();
+                // Only the overlay changes, so the static layer is left alone
+                repaintDragLine();
+                mousePos.setLocation((int) (e.getX() / SCALE), (int) (e.getY() / SCALE));
+                repaintDragLine();
+                updateHovered();
             }
 
             @Override
@@ -130,166 +234,831 @@ public class MainPanel extends JComponent {
                 mouseMoved(e);
             }
         });
+
+        setHudVisible(Boolean.getBoolean("pactl.hud"));
+        metersVisible = Boolean.getBoolean("pactl.meters");
     }
 
-    public void refresh() {
-        final var newSources = loadSourcesOrSinks(Pactl::listSources);
-        final var newSinks = loadSourcesOrSinks(Pactl::listSinks);
-        final var newLinks = loadLinks();
+    public PactlClient client() {
+        return client;
+    }
 
-        if (!newSources.equals(sources) || !newSinks.equals(sinks) || !newLinks.equals(links)) {
-            sources = newSources;
-            sinks = newSinks;
-            links = newLinks;
-            repaint();
+    public boolean isHudVisible() {
+        return hudVisible;
+    }
+
+    // The HUD shows the metrics of recent refreshes, pactl calls, and paints
+    public void setHudVisible(boolean visible) {
+        hudVisible = visible;
+        if (visible) {
+            hudTimer.start();
+        } else {
+            hudTimer.stop();
+        }
+        repaint();
+    }
+
+    public boolean isMetersVisible() {
+        return metersVisible;
+    }
+
+    // Peak and RMS meters on every source and sink in view, captured through parec
+    public void setMetersVisible(boolean visible) {
+        metersVisible = visible;
+        updateMetersRunning();
+    }
+
+    // Stops every capture while paused, and starts them again afterwards if the meters are still visible
+    public void setMetersPaused(boolean paused) {
+        metersPaused = paused;
+        updateMetersRunning();
+    }
+
+    private void updateMetersRunning() {
+        if (metersVisible && !metersPaused && isDisplayable()) {
+            startMeters();
+        } else {
+            meterTimer.stop();
+            levelMeters.close();
+        }
+        repaint();
+    }
+
+    private void startMeters() {
+        // The display mode of the screen the panel is on, which is only known once it's been added to a window
+        final var refreshRate = getGraphicsConfiguration().getDevice().getDisplayMode().getRefreshRate();
+        final var fps = refreshRate != DisplayMode.REFRESH_RATE_UNKNOWN
+            ? Math.min(MAX_METER_FPS, refreshRate)
+            : MAX_METER_FPS;
+        meterTimer.setDelay(1000 / fps);
+        lastMeterUpdate = System.nanoTime();
+        meterTimer.start();
+    }
+
+    // Repaints are coalesced to one pass per timer tick, and only cover the meters that moved
+    private void updateMeters() {
+        if (!isShowing()) {
+            // Such as while its window is hidden. Captures start again once it's showing.
+            levelMeters.close();
+            return;
+        }
+        final var now = System.nanoTime();
+        final var elapsedSeconds = (now - lastMeterUpdate) / 1e9f;
+        lastMeterUpdate = now;
+        final var layout = currentLayout();
+        final var area = visibleLayoutArea();
+        levelMeters.update(
+            layout.sourcesIn(area), layout.sinksIn(area), elapsedSeconds, bounds -> repaint(scaleBounds(bounds))
+        );
+    }
+
+    // The selected devices if index is one of them, otherwise just index. Devices hidden by the filter are left out.
+    private static Set<Integer> withSelection(int index, Set<Integer> selected, Map<Integer, GraphLayout.Box> shown) {
+        if (!selected.contains(index)) {
+            return Set.of(index);
+        }
+        final var result = new LinkedHashSet<Integer>();
+        for (final var device : selected) {
+            if (shown.containsKey(device)) {
+                result.add(device);
+            }
+        }
+        return result;
+    }
+
+    private void toggleSelected(Set<Integer> selected, GraphLayout.Box box) {
+        if (!selected.remove(box.device().index())) {
+            selected.add(box.device().index());
+        }
+        repaint(scaleBounds(box.connector()));
+    }
+
+    private void clearSelection() {
+        if (selectedSources.isEmpty() && selectedSinks.isEmpty()) return;
+        selectedSources.clear();
+        selectedSinks.clear();
+        repaint();
+    }
+
+    // Links every source to every sink, all or nothing
+    private void link(Collection<Integer> sources, Collection<Integer> sinks) {
+        final var links = new ArrayList<PactlSnapshotDiff.Link>();
+        final var ops = new ArrayList<PactlOp>();
+        for (final var source : sources) {
+            for (final var sink : sinks) {
+                final var pending = new PactlSnapshotDiff.Link(source, sink);
+                if (snapshot.links().contains(source, sink) || !pendingLinks.add(pending)) continue;
+                repaintLink(currentLayout(), source, sink);
+                links.add(pending);
+                ops.add(new PactlOp.Load("module-loopback", Map.of(
+                    "latency_msec", Integer.toString(DEFAULT_LATENCY_MSEC),
+                    "source", Integer.toString(source),
+                    "sink", Integer.toString(sink)
+                )));
+            }
+        }
+        if (ops.isEmpty()) return;
+
+        client.applyBatch(ops, true).whenCompleteAsync((result, ex) -> {
+            for (final var pending : links) {
+                pendingLinks.remove(pending);
+                repaintLink(currentLayout(), pending.source(), pending.sink());
+            }
+            if (ex != null || !result.succeeded()) {
+                if (ex != null) {
+                    LOGGER.error("Failed to create loopback modules", ex);
+                } else {
+                    for (final var failure : result.failures()) {
+                        LOGGER.error("Failed to create loopback module {}", failure.op(), failure.error());
+                    }
+                }
+                JOptionPane.showMessageDialog(
+                    this,
+                    ops.size() == 1 ? "Failed to create loopback module" : "Failed to create loopback modules",
+                    Main.TITLE,
+                    JOptionPane.ERROR_MESSAGE
+                );
+            }
+            refreshLinks();
+        }, EDT_EXECUTOR);
+    }
+
+    private void unlink(Collection<PactlSnapshotDiff.Link> links) {
+        final var unlinking = new ArrayList<PactlSnapshotDiff.Link>();
+        final var ops = new ArrayList<PactlOp>();
+        for (final var link : links) {
+            final var module = moduleOf(link);
+            if (module == null || !pendingUnloads.add(module.index())) continue;
+            repaintLink(currentLayout(), link.source(), link.sink());
+            unlinking.add(link);
+            ops.add(new PactlOp.Unload(module.index()));
+        }
+        if (ops.isEmpty()) return;
+
+        // Unloads can't be rolled back, so as many as possible are kept
+        client.applyBatch(ops, false).whenCompleteAsync((result, ex) -> {
+            final var failed = new ArrayList<String>();
+            for (var i = 0; i < ops.size(); i++) {
+                final var link = unlinking.get(i);
+                final var op = (PactlOp.Unload) ops.get(i);
+                pendingUnloads.remove(op.index());
+                repaintLink(currentLayout(), link.source(), link.sink());
+                final var error = ex != null ? ex : result.outcomes().get(i).error();
+                if (error != null) {
+                    LOGGER.error("Failed to unload module {}", op.index(), error);
+                    final var sinkInfo = snapshot.sinks().get(link.sink());
+                    failed.add(sinkInfo != null ? sinkInfo.description() : Integer.toString(link.sink()));
+                }
+            }
+            if (!failed.isEmpty()) {
+                JOptionPane.showMessageDialog(
+                    this,
+                    "Failed to unlink the following sinks: " + String.join(", ", failed),
+                    Main.TITLE,
+                    JOptionPane.ERROR_MESSAGE
+                );
+            }
+            refreshLinks();
+        }, EDT_EXECUTOR);
+    }
+
+    private void promptLatency(PactlSnapshotDiff.Link link, PactlModule module) {
+        final var input = JOptionPane.showInputDialog(
+            this,
+            "Latency (ms):",
+            PactlArguments.getIntOrDefault(module.arguments(), "latency_msec", MODULE_DEFAULT_LATENCY_MSEC)
+        );
+        if (input == null) return;
+        int latency;
+        try {
+            latency = Integer.parseInt(input.strip());
+        } catch (NumberFormatException e) {
+            latency = -1;
         }
+        if (latency <= 0) {
+            JOptionPane.showMessageDialog(this, "Invalid latency: " + input, Main.TITLE, JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        setLatency(link, module, latency);
+    }
+
+    // module-loopback can't change its latency once loaded, so the module is re-created with the new latency_msec.
+    // The new module is loaded before the old one is unloaded, in an atomic batch, so a failed load leaves the link as
+    // it was, and a failed unload unloads the new module again rather than leaving the link looped back twice.
+    private void setLatency(PactlSnapshotDiff.Link link, PactlModule module, int latencyMsec) {
+        if (!pendingUnloads.add(module.index())) return;
+        repaintLink(currentLayout(), link.source(), link.sink());
+        final var arguments = new LinkedHashMap<>(module.arguments());
+        PactlArguments.putInt(arguments, "latency_msec", latencyMsec);
+        final List<PactlOp> ops = List.of(
+            new PactlOp.Load(module.name(), arguments),
+            new PactlOp.Unload(module.index())
+        );
+        // One at a time, so that the unload only starts once the load has succeeded
+        client.applyBatch(ops, 1, true).whenCompleteAsync((result, ex) -> {
+            pendingUnloads.remove(module.index());
+            repaintLink(currentLayout(), link.source(), link.sink());
+            if (ex != null) {
+                LOGGER.error("Failed to change latency of module {}", module.index(), ex);
+                JOptionPane.showMessageDialog(
+                    this, "Failed to change the latency of the link", Main.TITLE, JOptionPane.ERROR_MESSAGE
+                );
+            } else if (!result.succeeded()) {
+                final var load = result.outcomes().get(0);
+                final var unload = result.outcomes().get(1);
+                final String message;
+                if (!load.succeeded()) {
+                    LOGGER.error("Failed to load replacement for module {}", module.index(), load.error());
+                    message = "Failed to change the latency of the link. The link was left as it was.";
+                } else if (result.rolledBack()) {
+                    LOGGER.error("Failed to unload module {}", module.index(), unload.error());
+                    message = "Failed to unload module " + module.index() + ", so its replacement was unloaded " +
+                        "again. The link was left as it was.";
+                } else {
+                    LOGGER.error(
+                        "Failed to unload module {}, and then its replacement {}", module.index(), load.module(),
+                        unload.error()
+                    );
+                    message = "Failed to unload module " + module.index() + " or its replacement, module " +
+                        load.module() + ". The link is looped back by both of them.";
+                }
+                JOptionPane.showMessageDialog(this, message, Main.TITLE, JOptionPane.ERROR_MESSAGE);
+            }
+            refreshLinks();
+        }, EDT_EXECUTOR);
+    }
+
+    @Nullable
+    private PactlModule moduleOf(PactlSnapshotDiff.Link link) {
+        return snapshot.links().get(link.source(), link.sink());
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        latencyTimer.start();
+        if (metersVisible && !metersPaused) {
+            startMeters();
+        }
+    }
+
+    @Override
+    public void removeNotify() {
+        latencyTimer.stop();
+        meterTimer.stop();
+        levelMeters.close();
+        super.removeNotify();
+    }
+
+    // Skipped while hidden, while there are no links to measure, and while the last poll is still running
+    private void refreshLatencies() {
+        if (latencyRefreshing || !isShowing()) return;
+        if (snapshot.links().isEmpty()) {
+            updateLatencies(Map.of());
+            return;
+        }
+        latencyRefreshing = true;
+        final var startTime = System.nanoTime();
+        LoopbackLatency.fetch(client).whenCompleteAsync((newLatencies, ex) -> {
+            latencyRefreshing = false;
+            if (ex != null) {
+                LOGGER.warn("Failed to fetch loopback latencies", ex);
+                return;
+            }
+            REFRESH_LATENCY_TIME.recordSince(startTime);
+            updateLatencies(newLatencies);
+        }, EDT_EXECUTOR);
+    }
+
+    private void updateLatencies(Map<Integer, Long> newLatencies) {
+        if (newLatencies.equals(latencies)) return;
+        latencies = newLatencies;
+        // Labels are part of the overlay, so this doesn't touch the static layer
+        repaint(getVisibleRect());
+    }
+
+    // Completes with whether anything changed
+    public CompletableFuture<Boolean> refresh() {
+        final var startTime = System.nanoTime();
+        final var base = snapshot;
+        final var sourcesStamp = sourcesGeneration.start();
+        final var sinksStamp = sinksGeneration.start();
+        final var linksStamp = linksGeneration.start();
+        return PactlSnapshot.fetch(client, base).thenApplyAsync(newSnapshot -> {
+            // Unchanged output gives back the same instance, which skips the equality walk entirely
+            var merged = snapshot;
+            if (newSnapshot.sources() != base.sources() && sourcesGeneration.apply(sourcesStamp)) {
+                merged = merged.withSources(newSnapshot.sources());
+            }
+            if (newSnapshot.sinks() != base.sinks() && sinksGeneration.apply(sinksStamp)) {
+                merged = merged.withSinks(newSnapshot.sinks());
+            }
+            if (newSnapshot.links() != base.links() && linksGeneration.apply(linksStamp)) {
+                merged = merged.withLinks(newSnapshot.links());
+            }
+            final var changed = merged != snapshot && applySnapshot(merged);
+            REFRESH_TIME.recordSince(startTime);
+            if (loading) {
+                loading = false;
+                repaint();
+                reportStartup("firstData");
+            }
+            return changed;
+        }, EDT_EXECUTOR);
+    }
+
+    public void handleEvent(PactlEvent event) {
+        if (event.facility() != PactlEvent.Facility.SOURCE &&
+            event.facility() != PactlEvent.Facility.SINK &&
+            event.facility() != PactlEvent.Facility.MODULE
+        ) return;
+        // Events tend to arrive in bursts, so only re-query once for all events queued so far
+        if (pendingRefresh.isEmpty()) {
+            SwingUtilities.invokeLater(this::flushPendingRefresh);
+        }
+        pendingRefresh.add(event.facility());
+    }
+
+    private void flushPendingRefresh() {
+        if (pendingRefresh.contains(PactlEvent.Facility.SOURCE)) {
+            refreshSources();
+        }
+        if (pendingRefresh.contains(PactlEvent.Facility.SINK)) {
+            refreshSinks();
+        }
+        if (pendingRefresh.contains(PactlEvent.Facility.MODULE)) {
+            refreshLinks();
+        }
+        pendingRefresh.clear();
+    }
+
+    private void refreshSources() {
+        final var startTime = System.nanoTime();
+        final var base = snapshot.sources();
+        final var stamp = sourcesGeneration.start();
+        PactlSnapshot.fetchSources(client, base).thenAcceptAsync(newSources -> {
+            if (newSources != base && sourcesGeneration.apply(stamp)) {
+                applySnapshot(snapshot.withSources(newSources));
+            }
+            REFRESH_SOURCES_TIME.recordSince(startTime);
+        }, EDT_EXECUTOR);
+    }
+
+    private void refreshSinks() {
+        final var startTime = System.nanoTime();
+        final var base = snapshot.sinks();
+        final var stamp = sinksGeneration.start();
+        PactlSnapshot.fetchSinks(client, base).thenAcceptAsync(newSinks -> {
+            if (newSinks != base && sinksGeneration.apply(stamp)) {
+                applySnapshot(snapshot.withSinks(newSinks));
+            }
+            REFRESH_SINKS_TIME.recordSince(startTime);
+        }, EDT_EXECUTOR);
     }
 
     private void refreshLinks() {
-        final var newLinks = loadLinks();
+        final var startTime = System.nanoTime();
+        final var base = snapshot.links();
+        final var stamp = linksGeneration.start();
+        PactlSnapshot.fetchLinks(client, base).thenAcceptAsync(newLinks -> {
+            if (newLinks != base && linksGeneration.apply(stamp)) {
+                applySnapshot(snapshot.withLinks(newLinks));
+            }
+            REFRESH_LINKS_TIME.recordSince(startTime);
+        }, EDT_EXECUTOR);
+    }
+
+    // Repaints only the boxes and links affected by the change. Returns whether anything changed.
+    private boolean applySnapshot(PactlSnapshot newSnapshot) {
+        final var diff = PactlSnapshotDiff.between(snapshot, newSnapshot);
+        final var oldSnapshot = snapshot;
+        snapshot = newSnapshot;
+        if (diff.isEmpty()) return false;
+        selectedSources.retainAll(snapshot.sources().keySet());
+        selectedSinks.retainAll(snapshot.sinks().keySet());
+
+        if (!diff.links().isEmpty() && !latencies.isEmpty()) {
+            // Latency labels can stick out past the link's bounds
+            repaint(getVisibleRect());
+        }
 
-        if (!newLinks.equals(links)) {
-            links = newLinks;
+        final var oldLayout = layout;
+        if (oldLayout == null) {
+            staticLayer.invalidateAll();
             repaint();
+            return true;
+        }
+        final var newLayout = computeLayout(oldLayout.metrics, oldLayout.width);
+        layout = newLayout;
+        updateHovered();
+        if (newLayout.contentWidth != oldLayout.contentWidth || newLayout.contentHeight != oldLayout.contentHeight) {
+            revalidate();
+        }
+
+        final var movedSources = repaintBoxes(oldLayout.sources, newLayout.sources, diff.sources());
+        final var movedSinks = repaintBoxes(oldLayout.sinks, newLayout.sinks, diff.sinks());
+        for (final var link : diff.links().added()) {
+            repaintLink(newLayout, link.source(), link.sink());
         }
+        for (final var link : diff.links().changed()) {
+            repaintLink(newLayout, link.source(), link.sink());
+        }
+        for (final var link : diff.links().removed()) {
+            repaintLink(oldLayout, link.source(), link.sink());
+        }
+        // Links attached to boxes that moved need to be redrawn in both places
+        repaintMovedLinks(oldSnapshot, oldLayout, movedSources, movedSinks);
+        repaintMovedLinks(snapshot, newLayout, movedSources, movedSinks);
+        for (final var pending : pendingLinks) {
+            if (movedSources.contains(pending.source()) || movedSinks.contains(pending.sink())) {
+                repaintLink(oldLayout, pending.source(), pending.sink());
+                repaintLink(newLayout, pending.source(), pending.sink());
+            }
+        }
+        return true;
     }
 
-    private static Map<Integer, PactlSourceOrSink> loadSourcesOrSinks(IOSupplier<List<PactlSourceOrSink>> provider) {
-        try {
-            return provider.get()
-                .stream()
-                .collect(Collectors.toMap(
-                    PactlSourceOrSink::index,
-                    Function.identity(),
-                    (a, b) -> b,
-                    LinkedHashMap::new
-                ));
-        } catch (IOException e) {
-            LOGGER.error("Failed to load sources or sinks", e);
-            return new LinkedHashMap<>();
+    // Returns the boxes that were added, removed, changed, or moved
+    private Set<Integer> repaintBoxes(
+        Map<Integer, GraphLayout.Box> oldBoxes,
+        Map<Integer, GraphLayout.Box> newBoxes,
+        PactlSnapshotDiff.Delta<Integer> delta
+    ) {
+        final var result = new HashSet<Integer>();
+        for (final var oldBox : oldBoxes.entrySet()) {
+            final var newBox = newBoxes.get(oldBox.getKey());
+            if (newBox == null || !newBox.equals(oldBox.getValue())) {
+                result.add(oldBox.getKey());
+                invalidateScaled(oldBox.getValue().paintBounds());
+            }
+        }
+        for (final var newBox : newBoxes.entrySet()) {
+            if (delta.added().contains(newBox.getKey()) || result.contains(newBox.getKey())) {
+                result.add(newBox.getKey());
+                invalidateScaled(newBox.getValue().paintBounds());
+            }
         }
+        return result;
     }
 
-    private static Map<Integer, Map<Integer, PactlModule>> loadLinks() {
-        try {
-            final var result = Pactl.listModules()
-                .stream()
-                .filter(module -> module.name().equals("module-loopback"))
-                .collect(Collectors.groupingBy(
-                    m -> PactlArguments.getIntOrDefault(m.arguments(), "source", -1),
-                    Collectors.collectingAndThen(
-                        Collectors.toMap(
-                            m -> PactlArguments.getIntOrDefault(m.arguments(), "sink", -1),
-                            Function.identity(),
-                            (a, b) -> b
-                        ),
-                        m -> {
-                            m.remove(-1);
-                            return m;
-                        }
-                    )
-                ));
-            result.remove(-1);
-            return result;
-        } catch (IOException e) {
-            LOGGER.error("Failed to load links", e);
-            return new HashMap<>();
+    private void repaintMovedLinks(
+        PactlSnapshot linksSnapshot, GraphLayout linksLayout, Set<Integer> movedSources, Set<Integer> movedSinks
+    ) {
+        linksSnapshot.links().forEach((source, sink, module) -> {
+            if (movedSources.contains(source) || movedSinks.contains(sink)) {
+                repaintLink(linksLayout, source, sink);
+            }
+        });
+    }
+
+    private void repaintLink(GraphLayout linkLayout, int source, int sink) {
+        final var bounds = linkLayout.linkBounds(source, sink);
+        if (bounds != null) {
+            invalidateScaled(bounds);
         }
     }
 
+    // Redraws the region of the static layer, and repaints it
+    private void invalidateScaled(Rectangle bounds) {
+        final var scaled = scaleBounds(bounds);
+        staticLayer.invalidate(scaled);
+        repaint(scaled);
+    }
+
+    private Rectangle visibleLayoutArea() {
+        final var visible = getVisibleRect();
+        return new Rectangle(
+            (int) (visible.x / SCALE), (int) (visible.y / SCALE),
+            (int) Math.ceil(visible.width / SCALE), (int) Math.ceil(visible.height / SCALE)
+        );
+    }
+
+    private static Rectangle scaleBounds(Rectangle bounds) {
+        return new Rectangle(
+            (int) Math.floor(bounds.x * SCALE) - 1,
+            (int) Math.floor(bounds.y * SCALE) - 1,
+            (int) Math.ceil(bounds.width * SCALE) + 2,
+            (int) Math.ceil(bounds.height * SCALE) + 2
+        );
+    }
+
+    private void updateHovered() {
+        final var layout = currentLayout();
+        var newHovered = layout.sourceAt(mousePos);
+        final var newHoveredIsSink = newHovered == null;
+        if (newHovered == null) {
+            newHovered = layout.sinkAt(mousePos);
+        }
+        final var newHoveredLink = newHovered == null ? layout.linkAt(mousePos) : null;
+
+        if (newHovered != hovered) {
+            if (hovered != null) {
+                repaint(scaleBounds(hovered.connector()));
+            }
+            hovered = newHovered;
+            hoveredIsSink = newHoveredIsSink;
+            if (hovered != null) {
+                repaint(scaleBounds(hovered.connector()));
+            }
+        }
+        if (!Objects.equals(newHoveredLink, hoveredLink)) {
+            repaintHoveredLink(layout);
+            hoveredLink = newHoveredLink;
+            repaintHoveredLink(layout);
+        }
+    }
+
+    private void repaintHoveredLink(GraphLayout layout) {
+        if (hoveredLink == null) return;
+        final var bounds = layout.linkBounds(hoveredLink.source(), hoveredLink.sink());
+        if (bounds != null) {
+            repaint(scaleBounds(bounds));
+        }
+    }
+
+    private void repaintDragLine() {
+        final var sourceBox = currentLayout().sources.get(start);
+        if (sourceBox == null) return;
+        final var bounds = new Rectangle(
+            currentLayout().linkStartX(sourceBox), (int) sourceBox.connector().getCenterY(), 0, 0
+        );
+        bounds.add(mousePos);
+        bounds.grow(GraphLayout.LINE_WIDTH, GraphLayout.LINE_WIDTH);
+        repaint(scaleBounds(bounds));
+    }
+
+    // Shows only the sources and sinks whose description contains filter, ignoring case
+    public void setFilter(String filter) {
+        final var newFilter = filter.strip().toLowerCase(Locale.ROOT);
+        if (newFilter.equals(this.filter)) return;
+        this.filter = newFilter;
+        layout = null;
+        updateHovered();
+        revalidate();
+        repaint();
+    }
+
+    // Recomputes the layout if the font or size changed since it was last computed
+    private GraphLayout currentLayout() {
+        final var font = getFont();
+        final var width = (int) (getWidth() / SCALE);
+        if (layout == null || layout.width != width || layout.metrics.getFont() != font) {
+            layout = computeLayout(getFontMetrics(font), width);
+            staticLayer.invalidateAll();
+        }
+        return layout;
+    }
+
+    private GraphLayout computeLayout(FontMetrics metrics, int width) {
+        if (metrics.getFont() != textWidthsFont || textWidths.size() > MAX_TEXT_WIDTHS) {
+            textWidths.clear();
+            textWidthsFont = metrics.getFont();
+        }
+        return GraphLayout.compute(
+            snapshot, metrics, width,
+            text -> textWidths.computeIfAbsent(text, metrics::stringWidth),
+            filter.isEmpty()
+                ? device -> true
+                : device -> device.description().toLowerCase(Locale.ROOT).contains(filter)
+        );
+    }
+
     @Override
     public Dimension getPreferredSize() {
-        return new Dimension(854, 480);
+        if (isPreferredSizeSet()) {
+            return super.getPreferredSize();
+        }
+        if (getFont() == null) {
+            return VIEWPORT_SIZE;
+        }
+        final var layout = currentLayout();
+        return new Dimension(
+            (int) Math.ceil(layout.contentWidth * SCALE),
+            (int) Math.ceil(layout.contentHeight * SCALE)
+        );
+    }
+
+    @Override
+    public Dimension getPreferredScrollableViewportSize() {
+        return VIEWPORT_SIZE;
+    }
+
+    @Override
+    public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return orientation == SwingConstants.VERTICAL
+            ? (int) (currentLayout().rowPitch() * SCALE)
+            : (int) (GraphLayout.MARGIN * SCALE);
+    }
+
+    @Override
+    public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return orientation == SwingConstants.VERTICAL ? visibleRect.height : visibleRect.width;
+    }
+
+    // Stretch to fill the viewport, and only scroll when the content doesn't fit
+    @Override
+    public boolean getScrollableTracksViewportWidth() {
+        return getParent() instanceof JViewport viewport && viewport.getWidth() >= getPreferredSize().width;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportHeight() {
+        return getParent() instanceof JViewport viewport && viewport.getHeight() >= getPreferredSize().height;
     }
 
     @Override
     protected void paintComponent(Graphics g) {
         super.paintComponent(g);
-        final var g2d = (Graphics2D) g;
-        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-        g2d.scale(SCALE, SCALE);
+        final var startTime = System.nanoTime();
+        final var g2d = (Graphics2D) g.create();
+        try {
+            paintContents(g2d);
+        } finally {
+            g2d.dispose();
+        }
+        if (hudVisible) {
+            MetricsHud.paint((Graphics2D) g, getVisibleRect());
+        }
+        PAINT_TIME.recordSince(startTime);
+        if (!painted) {
+            painted = true;
+            reportStartup("firstFrame");
+        }
+    }
+
+    // Records the time since the JVM started, as startup.<milestone>
+    private static void reportStartup(String milestone) {
+        final var sinceStart = System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+        Metrics.timer("startup." + milestone).record(TimeUnit.MILLISECONDS.toNanos(sinceStart));
+        LOGGER.info("Startup reached {} after {}ms", milestone, sinceStart);
+    }
 
-        final var boxHeight = g2d.getFontMetrics().getHeight() + 12;
-        sourcePoints = drawSources(sources.values(), g2d, 10, false);
-        sinkPoints = drawSources(sinks.values(), g2d, g2d.getClipBounds().width - 22, true);
+    private void paintContents(Graphics2D g2d) {
+        final var layout = currentLayout();
+        staticLayer.paint(g2d, getVisibleRect(), layerGraphics -> {
+            final var startTime = System.nanoTime();
+            paintStaticLayer(layerGraphics, layout);
+            STATIC_LAYER_TIME.recordSince(startTime);
+        });
 
-        g2d.setStroke(LINE_STROKE);
-        for (final var linkSources : links.entrySet()) {
-            final var sourceRect = sourcePoints.get(linkSources.getKey());
-            if (sourceRect == null) continue;
-            for (final var linkSink : linkSources.getValue().entrySet()) {
-                final var sinkRect = sinkPoints.get(linkSink.getKey());
-                if (sinkRect == null) continue;
-                g2d.setColor(Color.ORANGE);
-                g2d.drawLine(
-                    (int) (sourceRect.getCenterX() + boxHeight / 8.0),
-                    (int) sourceRect.getCenterY(),
-                    (int) (sinkRect.getCenterX() - boxHeight / 8.0),
-                    (int) sinkRect.getCenterY()
-                );
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2d.scale(SCALE, SCALE);
+        if (hoveredLink != null) {
+            final var sourceBox = layout.sources.get(hoveredLink.source());
+            final var sinkBox = layout.sinks.get(hoveredLink.sink());
+            if (sourceBox != null && sinkBox != null) {
+                g2d.setStroke(LINE_STROKE);
+                g2d.setColor(Color.RED);
+                drawLink(g2d, layout, sourceBox, sinkBox);
             }
         }
-
-        g2d.setStroke(BASE_STROKE);
-        for (final var source : sourcePoints.values()) {
-            g2d.setColor(source.contains(mousePos) ? Color.GREEN : Color.BLACK);
-            g2d.fillArc(source.x, source.y, source.width, source.height, -90, 180);
+        if (!latencies.isEmpty()) {
+            drawLatencies(g2d, layout);
+        }
+        if (metersVisible) {
+            final var clip = g2d.getClipBounds();
+            levelMeters.paint(g2d, layout.sourcesIn(clip), layout.sinksIn(clip));
+        }
+        g2d.setColor(Color.BLUE);
+        for (final var selected : selectedSources) {
+            final var box = layout.sources.get(selected);
+            if (box == null) continue;
+            final var connector = box.connector();
+            g2d.fillArc(connector.x, connector.y, connector.width, connector.height, -90, 180);
+        }
+        for (final var selected : selectedSinks) {
+            final var box = layout.sinks.get(selected);
+            if (box == null) continue;
+            final var connector = box.connector();
+            g2d.fillArc(connector.x, connector.y, connector.width, connector.height, 90, 180);
         }
-        for (final var sink : sinkPoints.values()) {
-            g2d.setColor(sink.contains(mousePos) ? Color.GREEN : Color.BLACK);
-            g2d.fillArc(sink.x, sink.y, sink.width, sink.height, 90, 180);
+        if (hovered != null) {
+            final var connector = hovered.connector();
+            g2d.setColor(Color.GREEN);
+            g2d.fillArc(connector.x, connector.y, connector.width, connector.height, hoveredIsSink ? 90 : -90, 180);
         }
 
-        final var sourceRect = sourcePoints.get(start);
-        if (sourceRect != null) {
+        if (loading) {
+            final var visible = getVisibleRect();
+            final var text = "Loading\u2026";
+            final var metrics = g2d.getFontMetrics();
+            g2d.setColor(Color.GRAY);
+            g2d.drawString(
+                text,
+                (float) ((visible.getCenterX() / SCALE) - metrics.stringWidth(text) / 2.0),
+                (float) ((visible.getCenterY() / SCALE) + metrics.getAscent() / 2.0)
+            );
+        }
+
+        final var sourceBox = layout.sources.get(start);
+        if (sourceBox != null) {
             g2d.setStroke(LINE_STROKE);
             g2d.setColor(Color.ORANGE);
             g2d.drawLine(
-                (int) (sourceRect.getCenterX() + boxHeight / 8.0),
-                (int) sourceRect.getCenterY(),
+                layout.linkStartX(sourceBox),
+                (int) sourceBox.connector().getCenterY(),
                 mousePos.x, mousePos.y
             );
         }
     }
 
-    private static Map<Integer, Rectangle> drawSources(Collection<PactlSourceOrSink> sources, Graphics2D g2d, int x, boolean rightAlign) {
-        final var points = new HashMap<Integer, Rectangle>();
-
+    // Labels each visible link with its measured latency, in red if it has drifted too far past its latency_msec
+    private void drawLatencies(Graphics2D g2d, GraphLayout layout) {
+        final var area = visibleLayoutArea();
+        final var font = g2d.getFont();
+        g2d.setFont(font.deriveFont(font.getSize2D() * 0.75f));
+        g2d.setStroke(BASE_STROKE);
         final var metrics = g2d.getFontMetrics();
-        final var boxHeight = metrics.getHeight() + 12;
-        final var centeredY = boxHeight / 2 + (metrics.getAscent() - metrics.getDescent() - metrics.getLeading()) / 2;
+        for (final var link : layout.linksIn(area)) {
+            final var module = moduleOf(link);
+            final var latency = module != null ? latencies.get(module.index()) : null;
+            if (latency == null) continue;
+            final var sourceBox = layout.sources.get(link.source());
+            final var sinkBox = layout.sinks.get(link.sink());
+            final var measuredMsec = latency / 1000.0;
+            final var targetMsec = PactlArguments.getIntOrDefault(
+                module.arguments(), "latency_msec", MODULE_DEFAULT_LATENCY_MSEC
+            );
+            final var drifted = measuredMsec > targetMsec + LATENCY_DRIFT_THRESHOLD_MSEC;
 
-        final var widestSource = longestName(sources, g2d.getFontMetrics());
-        if (rightAlign) {
-            x -= widestSource;
+            final var text = String.format(Locale.ROOT, "%.0f ms", measuredMsec);
+            final var width = metrics.stringWidth(text) + 4;
+            final var height = metrics.getHeight();
+            // A third of the way along, rather than halfway, so that the labels of links crossing in the middle (such
+            // as two swapped links) don't land on top of each other
+            final var startX = layout.linkStartX(sourceBox);
+            final var startY = sourceBox.connector().getCenterY();
+            final var x = startX + (layout.linkEndX(sinkBox) - startX) / 3 - width / 2;
+            final var y = (int) (startY + (sinkBox.connector().getCenterY() - startY) / 3) - height / 2;
+            g2d.setColor(drifted ? Color.RED : Color.WHITE);
+            g2d.fillRect(x, y, width, height);
+            g2d.setColor(drifted ? Color.RED.darker() : Color.GRAY);
+            g2d.drawRect(x, y, width, height);
+            g2d.setColor(drifted ? Color.WHITE : Color.BLACK);
+            g2d.drawString(text, x + 2, y + metrics.getAscent());
         }
-        var y = 10;
-        for (final var source : sources) {
-            g2d.setColor(Color.BLACK);
-            g2d.fillRect(x, y, widestSource + 12, boxHeight);
+        g2d.setFont(font);
+    }
 
-            g2d.setColor(Color.WHITE);
-            g2d.fillRect(x + 3, y + 3, widestSource + 6, boxHeight - 6);
+    // Boxes, labels, links, and connectors. Only the rows intersecting the clip are drawn.
+    private void paintStaticLayer(Graphics2D g2d, GraphLayout layout) {
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2d.scale(SCALE, SCALE);
+        final var clip = g2d.getClipBounds();
+        final var visibleSources = layout.sourcesIn(clip);
+        final var visibleSinks = layout.sinksIn(clip);
 
-            g2d.setColor(Color.BLACK);
-            g2d.drawString(source.description(), x + 6, y + centeredY);
+        drawBoxes(visibleSources, layout, g2d);
+        drawBoxes(visibleSinks, layout, g2d);
 
-            points.put(source.index(), new Rectangle(
-                x - boxHeight / 4 + (rightAlign ? 0 : widestSource + 12),
-                y + boxHeight / 4,
-                boxHeight / 2, boxHeight / 2
-            ));
+        g2d.setStroke(LINE_STROKE);
+        for (final var link : layout.linksIn(clip)) {
+            final var sourceBox = layout.sources.get(link.source());
+            final var sinkBox = layout.sinks.get(link.sink());
+            final var module = moduleOf(link);
+            g2d.setColor(module != null && pendingUnloads.contains(module.index()) ? Color.GRAY : Color.ORANGE);
+            drawLink(g2d, layout, sourceBox, sinkBox);
+        }
+        g2d.setColor(Color.GRAY);
+        for (final var pending : pendingLinks) {
+            final var sourceBox = layout.sources.get(pending.source());
+            final var sinkBox = layout.sinks.get(pending.sink());
+            if (sourceBox == null || sinkBox == null) continue;
+            drawLink(g2d, layout, sourceBox, sinkBox);
+        }
 
-            y += boxHeight + 10;
+        g2d.setStroke(BASE_STROKE);
+        g2d.setColor(Color.BLACK);
+        for (final var source : visibleSources) {
+            final var connector = source.connector();
+            g2d.fillArc(connector.x, connector.y, connector.width, connector.height, -90, 180);
+        }
+        for (final var sink : visibleSinks) {
+            final var connector = sink.connector();
+            g2d.fillArc(connector.x, connector.y, connector.width, connector.height, 90, 180);
         }
+    }
 
-        return points;
+    private static void drawLink(Graphics2D g2d, GraphLayout layout, GraphLayout.Box source, GraphLayout.Box sink) {
+        g2d.drawLine(
+            layout.linkStartX(source),
+            (int) source.connector().getCenterY(),
+            layout.linkEndX(sink),
+            (int) sink.connector().getCenterY()
+        );
     }
 
-    private static int longestName(Collection<PactlSourceOrSink> sources, FontMetrics font) {
-        return sources.stream()
-            .mapToInt(s -> font.stringWidth(s.description()))
-            .max()
-            .orElse(0);
+    private static void drawBoxes(Collection<GraphLayout.Box> boxes, GraphLayout layout, Graphics2D g2d) {
+        for (final var box : boxes) {
+            final var bounds = box.bounds();
+            g2d.setColor(Color.BLACK);
+            g2d.fillRect(bounds.x, bounds.y, bounds.width, bounds.height);
+
+            g2d.setColor(Color.WHITE);
+            g2d.fillRect(bounds.x + 3, bounds.y + 3, bounds.width - 6, bounds.height - 6);
+
+            g2d.setColor(Color.BLACK);
+            g2d.drawString(box.device().description(), bounds.x + 6, bounds.y + layout.textY);
+        }
     }
 }
@@ -0,0 +1,52 @@
+package io.github.gaming32.pactlloopbackgui.gui;
+
+import io.github.gaming32.pactlloopbackgui.metrics.Metrics;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+
+// A table of every recorded metric, drawn over the corner of the visible area
+final class MetricsHud {
+    private static final Font FONT = new Font(Font.MONOSPACED, Font.PLAIN, 11);
+    private static final Color BACKGROUND = new Color(0, 0, 0, 180);
+    private static final int PADDING = 5;
+
+    private MetricsHud() {
+    }
+
+    // g must be in component coordinates
+    static void paint(Graphics2D g, Rectangle visible) {
+        final var lines = new ArrayList<String>();
+        lines.add(String.format("%-28s %6s %8s %8s %8s %8s", "metric (last minute)", "n", "p50", "p90", "p99", "max"));
+        Metrics.histograms().forEach((name, histogram) -> {
+            final var stats = histogram.stats();
+            if (stats.count() == 0) return;
+            lines.add(String.format(
+                "%-28s %6d %8.2f %8.2f %8.2f %8.2f %s",
+                name, stats.windowSamples(), stats.p50(), stats.p90(), stats.p99(), stats.max(), histogram.getUnit()
+            ));
+        });
+        Metrics.counters().forEach((name, counter) -> {
+            if (counter.getValue() == 0) return;
+            lines.add(String.format("%-28s %6d", name, counter.getValue()));
+        });
+
+        g.setFont(FONT);
+        final var metrics = g.getFontMetrics();
+        final var width = lines.stream().mapToInt(metrics::stringWidth).max().orElse(0) + 2 * PADDING;
+        final var height = lines.size() * metrics.getHeight() + 2 * PADDING;
+        final var x = visible.x + PADDING;
+        final var y = visible.y + PADDING;
+        g.setColor(BACKGROUND);
+        g.fillRect(x, y, width, height);
+        g.setColor(Color.WHITE);
+        var lineY = y + PADDING + metrics.getAscent();
+        for (final var line : lines) {
+            g.drawString(line, x + PADDING, lineY);
+            lineY += metrics.getHeight();
+        }
+    }
+}
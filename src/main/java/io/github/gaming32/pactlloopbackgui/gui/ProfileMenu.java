@@ -0,0 +1,108 @@
+package io.github.gaming32.pactlloopbackgui.gui;
+
+import io.github.gaming32.pactlloopbackgui.Main;
+import io.github.gaming32.pactlloopbackgui.profile.ProfileReconciler;
+import io.github.gaming32.pactlloopbackgui.profile.RoutingProfile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.swing.*;
+import javax.swing.filechooser.FileNameExtensionFilter;
+import java.util.ArrayList;
+import java.util.concurrent.Executor;
+
+public final class ProfileMenu extends JMenu {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProfileMenu.class);
+
+    private static final Executor EDT_EXECUTOR = SwingUtilities::invokeLater;
+
+    private final MainPanel panel;
+    private final JFileChooser chooser = new JFileChooser();
+
+    // With several servers, each one's panel gets its own menu
+    public ProfileMenu(String title, MainPanel panel) {
+        super(title);
+        this.panel = panel;
+        chooser.setFileFilter(new FileNameExtensionFilter("Routing profiles", "json"));
+
+        final var apply = new JMenuItem("Apply Profile...");
+        apply.addActionListener(e -> applyProfile());
+        add(apply);
+        final var save = new JMenuItem("Save Current Links...");
+        save.addActionListener(e -> saveProfile());
+        add(save);
+    }
+
+    // Shows the plan and asks before changing anything
+    private void applyProfile() {
+        if (chooser.showOpenDialog(panel) != JFileChooser.APPROVE_OPTION) return;
+        final var path = chooser.getSelectedFile().toPath();
+        final var client = panel.client();
+        client.supply(() -> RoutingProfile.load(path))
+            .thenCompose(profile -> ProfileReconciler.plan(client, profile))
+            .whenCompleteAsync((plan, ex) -> {
+                if (ex != null) {
+                    showError("Failed to load profile", ex);
+                    return;
+                }
+                final var message = new StringBuilder();
+                plan.problems().forEach(problem -> message.append(problem).append('\n'));
+                if (plan.isEmpty()) {
+                    message.append("The current links already match the profile.");
+                    JOptionPane.showMessageDialog(panel, message, Main.TITLE, JOptionPane.INFORMATION_MESSAGE);
+                    return;
+                }
+                plan.steps().forEach(step -> message.append(step.description()).append('\n'));
+                message.append("\nApply these changes?");
+                final var answer = JOptionPane.showConfirmDialog(
+                    panel, message, Main.TITLE, JOptionPane.OK_CANCEL_OPTION, JOptionPane.QUESTION_MESSAGE
+                );
+                if (answer != JOptionPane.OK_OPTION) return;
+
+                ProfileReconciler.apply(client, plan).whenCompleteAsync((result, applyEx) -> {
+                    panel.refresh();
+                    if (applyEx != null) {
+                        showError("Failed to apply profile", applyEx);
+                        return;
+                    }
+                    final var failed = new ArrayList<String>();
+                    for (var i = 0; i < result.outcomes().size(); i++) {
+                        final var error = result.outcomes().get(i).error();
+                        if (error != null) {
+                            LOGGER.error("Failed to apply profile step {}", plan.steps().get(i).description(), error);
+                            failed.add(plan.steps().get(i).description());
+                        }
+                    }
+                    if (!failed.isEmpty()) {
+                        JOptionPane.showMessageDialog(
+                            panel,
+                            "The following changes failed:\n" + String.join("\n", failed),
+                            Main.TITLE,
+                            JOptionPane.ERROR_MESSAGE
+                        );
+                    }
+                }, EDT_EXECUTOR);
+            }, EDT_EXECUTOR);
+    }
+
+    private void saveProfile() {
+        if (chooser.showSaveDialog(panel) != JFileChooser.APPROVE_OPTION) return;
+        final var path = chooser.getSelectedFile().toPath();
+        final var client = panel.client();
+        ProfileReconciler.capture(client, false)
+            .thenCompose(profile -> client.supply(() -> {
+                profile.save(path);
+                return null;
+            }))
+            .whenCompleteAsync((v, ex) -> {
+                if (ex != null) {
+                    showError("Failed to save profile", ex);
+                }
+            }, EDT_EXECUTOR);
+    }
+
+    private void showError(String message, Throwable ex) {
+        LOGGER.error(message, ex);
+        JOptionPane.showMessageDialog(panel, message, Main.TITLE, JOptionPane.ERROR_MESSAGE);
+    }
+}
@@ -0,0 +1,26 @@
+package io.github.gaming32.pactlloopbackgui.gui;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Numbers the refreshes of one part of the snapshot in the order they start. Their queries can complete in any order,
+// so a result is only applied if no refresh that started after it has been applied already.
+final class RefreshGeneration {
+    private final AtomicInteger started = new AtomicInteger();
+    // Only touched on the EDT
+    private int applied;
+
+    // Called as the refresh's query starts
+    int start() {
+        return started.incrementAndGet();
+    }
+
+    // Called on the EDT once the refresh's result is in. Returns whether it's newer than what has been applied, in
+    // which case it counts as applied from then on.
+    boolean apply(int generation) {
+        if (generation <= applied) {
+            return false;
+        }
+        applied = generation;
+        return true;
+    }
+}
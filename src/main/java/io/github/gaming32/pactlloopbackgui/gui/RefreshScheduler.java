@@ -0,0 +1,134 @@
+package io.github.gaming32.pactlloopbackgui.gui;
+
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.*;
+import java.awt.AWTEvent;
+import java.awt.Frame;
+import java.awt.Toolkit;
+import java.awt.event.AWTEventListener;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.ComponentListener;
+import java.awt.event.WindowStateListener;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+// Polls on the EDT, backing off exponentially while refreshes find nothing new, and going back to the fast rate after a
+// change or any user input. Paused while the watched frame is iconified or hidden. A refresh is only scheduled once the
+// previous one has finished, so they never overlap. Main only starts it as a fallback, for when pactl subscribe can't
+// be started or ends, since events make polling unnecessary otherwise.
+public final class RefreshScheduler {
+    private static final int MIN_DELAY_MS = Integer.getInteger("pactl.pollMinDelay", 1000);
+    private static final int MAX_DELAY_MS = Integer.getInteger("pactl.pollMaxDelay", 30_000);
+
+    // Completes with whether the refresh found any changes
+    private final Supplier<CompletableFuture<Boolean>> refresh;
+    private final Timer timer;
+    // Only registered while started, since it's called for every mouse and key event in the application
+    private final AWTEventListener inputListener = e -> poke();
+    @Nullable
+    private Frame frame;
+    private final WindowStateListener stateListener = e -> updatePaused();
+    private final ComponentListener visibilityListener = new ComponentAdapter() {
+        @Override
+        public void componentShown(ComponentEvent e) {
+            updatePaused();
+        }
+
+        @Override
+        public void componentHidden(ComponentEvent e) {
+            updatePaused();
+        }
+    };
+    private int delay = MIN_DELAY_MS;
+    private long scheduledAt;
+    private boolean started;
+    private boolean paused;
+    private boolean refreshing;
+
+    public RefreshScheduler(Supplier<CompletableFuture<Boolean>> refresh) {
+        this.refresh = refresh;
+        timer = new Timer(MIN_DELAY_MS, e -> runRefresh());
+        timer.setRepeats(false);
+    }
+
+    public void watch(Frame frame) {
+        unwatch();
+        this.frame = frame;
+        frame.addWindowStateListener(stateListener);
+        frame.addComponentListener(visibilityListener);
+        updatePaused();
+    }
+
+    public void start() {
+        if (!started) {
+            Toolkit.getDefaultToolkit().addAWTEventListener(
+                inputListener, AWTEvent.MOUSE_EVENT_MASK | AWTEvent.KEY_EVENT_MASK
+            );
+        }
+        started = true;
+        delay = MIN_DELAY_MS;
+        schedule(delay);
+    }
+
+    public void stop() {
+        if (started) {
+            Toolkit.getDefaultToolkit().removeAWTEventListener(inputListener);
+        }
+        started = false;
+        timer.stop();
+    }
+
+    // Stops polling and removes every listener, after which the scheduler can be dropped
+    public void close() {
+        stop();
+        unwatch();
+    }
+
+    private void unwatch() {
+        if (frame == null) return;
+        frame.removeWindowStateListener(stateListener);
+        frame.removeComponentListener(visibilityListener);
+        frame = null;
+        paused = false;
+    }
+
+    // Goes back to the fast rate, bringing the next refresh forward if it's further away than that
+    public void poke() {
+        delay = MIN_DELAY_MS;
+        if (timer.isRunning() && scheduledAt + timer.getInitialDelay() - System.currentTimeMillis() > MIN_DELAY_MS) {
+            schedule(MIN_DELAY_MS);
+        }
+    }
+
+    private void updatePaused() {
+        if (frame == null) return;
+        final var wasPaused = paused;
+        paused = !frame.isVisible() || (frame.getExtendedState() & Frame.ICONIFIED) != 0;
+        if (paused) {
+            timer.stop();
+        } else if (wasPaused) {
+            // Whatever changed while paused should show up straight away
+            delay = MIN_DELAY_MS;
+            schedule(0);
+        }
+    }
+
+    private void schedule(int delayMs) {
+        if (!started || paused || refreshing) return;
+        scheduledAt = System.currentTimeMillis();
+        timer.setInitialDelay(delayMs);
+        timer.restart();
+    }
+
+    private void runRefresh() {
+        if (!started || paused || refreshing) return;
+        refreshing = true;
+        refresh.get().whenCompleteAsync((changed, ex) -> {
+            refreshing = false;
+            delay = ex == null && changed ? MIN_DELAY_MS : Math.min(delay * 2, MAX_DELAY_MS);
+            schedule(delay);
+        }, SwingUtilities::invokeLater);
+    }
+}
@@ -0,0 +1,23 @@
+package io.github.gaming32.pactlloopbackgui.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public final class Counter implements CounterMBean {
+    private final LongAdder value = new LongAdder();
+
+    Counter() {
+    }
+
+    public void increment() {
+        value.increment();
+    }
+
+    public void add(long amount) {
+        value.add(amount);
+    }
+
+    @Override
+    public long getValue() {
+        return value.sum();
+    }
+}
@@ -0,0 +1,5 @@
+package io.github.gaming32.pactlloopbackgui.metrics;
+
+public interface CounterMBean {
+    long getValue();
+}
@@ -0,0 +1,57 @@
+package io.github.gaming32.pactlloopbackgui.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Named metrics, each registered as an MBean under io.github.gaming32.pactlloopbackgui. Asking for the same name twice
+// gives the same metric.
+public final class Metrics {
+    private static final Logger LOGGER = LoggerFactory.getLogger(Metrics.class);
+    private static final String DOMAIN = "io.github.gaming32.pactlloopbackgui";
+
+    private static final Map<String, RollingHistogram> HISTOGRAMS = new ConcurrentHashMap<>();
+    private static final Map<String, Counter> COUNTERS = new ConcurrentHashMap<>();
+
+    private Metrics() {
+    }
+
+    // Records durations in nanoseconds, and reports them in milliseconds
+    public static RollingHistogram timer(String name) {
+        return histogram(name, "ms", 1e6);
+    }
+
+    public static RollingHistogram histogram(String name, String unit, double scale) {
+        return HISTOGRAMS.computeIfAbsent(name, key -> register("Histogram", key, new RollingHistogram(unit, scale)));
+    }
+
+    public static Counter counter(String name) {
+        return COUNTERS.computeIfAbsent(name, key -> register("Counter", key, new Counter()));
+    }
+
+    public static SortedMap<String, RollingHistogram> histograms() {
+        return new TreeMap<>(HISTOGRAMS);
+    }
+
+    public static SortedMap<String, Counter> counters() {
+        return new TreeMap<>(COUNTERS);
+    }
+
+    private static <T> T register(String type, String name, T metric) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(
+                metric, new ObjectName(DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name))
+            );
+        } catch (JMException e) {
+            LOGGER.warn("Failed to register MBean for {}", name, e);
+        }
+        return metric;
+    }
+}
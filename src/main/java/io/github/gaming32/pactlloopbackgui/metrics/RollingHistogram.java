@@ -0,0 +1,111 @@
+package io.github.gaming32.pactlloopbackgui.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Keeps the most recent samples in a ring, and computes percentiles over the ones inside the window when asked.
+// Recording is cheap, and the cost of sorting is only paid by whoever reads the percentiles.
+public final class RollingHistogram implements RollingHistogramMBean {
+    private static final int CAPACITY = 1024;
+    private static final long WINDOW_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final String unit;
+    // Recorded values are divided by this before being reported
+    private final double scale;
+
+    private final long[] times = new long[CAPACITY];
+    private final long[] values = new long[CAPACITY];
+    private int next;
+    private int size;
+    private final LongAdder count = new LongAdder();
+
+    RollingHistogram(String unit, double scale) {
+        this.unit = unit;
+        this.scale = scale;
+    }
+
+    public void record(long value) {
+        final var now = System.nanoTime();
+        count.increment();
+        synchronized (this) {
+            times[next] = now;
+            values[next] = value;
+            next = (next + 1) % CAPACITY;
+            size = Math.min(size + 1, CAPACITY);
+        }
+    }
+
+    // Records the time since startNanos, for histograms created with Metrics.timer
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public Stats stats() {
+        final var cutoff = System.nanoTime() - WINDOW_NANOS;
+        final var window = new long[CAPACITY];
+        var n = 0;
+        synchronized (this) {
+            for (var i = 0; i < size; i++) {
+                if (times[i] - cutoff >= 0) {
+                    window[n++] = values[i];
+                }
+            }
+        }
+        return stats(Arrays.copyOf(window, n));
+    }
+
+    private Stats stats(long[] window) {
+        if (window.length == 0) {
+            return new Stats(count.sum(), 0, 0, 0, 0, 0);
+        }
+        Arrays.sort(window);
+        return new Stats(
+            count.sum(), window.length,
+            percentile(window, 0.5), percentile(window, 0.9), percentile(window, 0.99),
+            window[window.length - 1] / scale
+        );
+    }
+
+    private double percentile(long[] sorted, double p) {
+        return sorted[(int) Math.ceil(p * sorted.length) - 1] / scale;
+    }
+
+    @Override
+    public String getUnit() {
+        return unit;
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public int getWindowSamples() {
+        return stats().windowSamples();
+    }
+
+    @Override
+    public double getP50() {
+        return stats().p50();
+    }
+
+    @Override
+    public double getP90() {
+        return stats().p90();
+    }
+
+    @Override
+    public double getP99() {
+        return stats().p99();
+    }
+
+    @Override
+    public double getMax() {
+        return stats().max();
+    }
+
+    public record Stats(long count, int windowSamples, double p50, double p90, double p99, double max) {
+    }
+}
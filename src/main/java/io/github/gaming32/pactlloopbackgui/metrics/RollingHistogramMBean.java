@@ -0,0 +1,18 @@
+package io.github.gaming32.pactlloopbackgui.metrics;
+
+// Percentiles are over the samples recorded in the last minute, in the histogram's unit
+public interface RollingHistogramMBean {
+    String getUnit();
+
+    long getCount();
+
+    int getWindowSamples();
+
+    double getP50();
+
+    double getP90();
+
+    double getP99();
+
+    double getMax();
+}
@@ -0,0 +1,89 @@
+package io.github.gaming32.pactlloopbackgui.pactl;
+
+import org.apache.commons.io.function.IOSupplier;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Lets a query that timed out stop whatever it's blocked on, rather than holding its worker until the process
+// timeout. While a query runs inside run, the pactl process, command session, or native connection it's waiting on
+// registers how to kill it through onCancel.
+final class Cancellation {
+    private static final ThreadLocal<Cancellation> CURRENT = new ThreadLocal<>();
+
+    private final List<Runnable> actions = new ArrayList<>();
+    // System.nanoTime() at which the query times out
+    private final long deadline;
+    private boolean cancelled;
+
+    Cancellation(long timeoutMs) {
+        deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+    }
+
+    <T> T run(IOSupplier<T> action) throws IOException {
+        synchronized (this) {
+            if (cancelled) {
+                throw new InterruptedIOException("Cancelled before it started");
+            }
+        }
+        CURRENT.set(this);
+        try {
+            return action.get();
+        } finally {
+            CURRENT.remove();
+        }
+    }
+
+    void cancel() {
+        final List<Runnable> toRun;
+        synchronized (this) {
+            if (cancelled) return;
+            cancelled = true;
+            toRun = List.copyOf(actions);
+            actions.clear();
+        }
+        toRun.forEach(Runnable::run);
+    }
+
+    // How long the current query has left before it times out, for anything it has to wait on that can't be killed,
+    // such as a lock. Outside of run, there's no query timeout, and fallbackNanos is returned.
+    static long remainingNanos(long fallbackNanos) {
+        final var cancellation = CURRENT.get();
+        if (cancellation == null) {
+            return fallbackNanos;
+        }
+        return Math.min(cancellation.deadline - System.nanoTime(), fallbackNanos);
+    }
+
+    // Runs kill if the current query is cancelled before the result is closed. Does nothing outside of run. If the
+    // query has already been cancelled, kill is run straight away.
+    static Registration onCancel(Runnable kill) {
+        final var cancellation = CURRENT.get();
+        if (cancellation == null) {
+            return () -> {
+            };
+        }
+        synchronized (cancellation) {
+            if (!cancellation.cancelled) {
+                cancellation.actions.add(kill);
+                return () -> {
+                    synchronized (cancellation) {
+                        cancellation.actions.remove(kill);
+                    }
+                };
+            }
+        }
+        kill.run();
+        return () -> {
+        };
+    }
+
+    @FunctionalInterface
+    interface Registration extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,60 @@
+package io.github.gaming32.pactlloopbackgui.pactl;
+
+import io.github.gaming32.pactlloopbackgui.metrics.Counter;
+import io.github.gaming32.pactlloopbackgui.metrics.Metrics;
+import io.github.gaming32.pactlloopbackgui.metrics.RollingHistogram;
+import org.apache.commons.io.function.IOSupplier;
+
+import java.io.IOException;
+
+// Metrics for one kind of Pactl call, named pactl.<command>.<metric>. Not every backend records every metric: only
+// process based calls have spawn, firstByte, and bytes.
+record CommandMetrics(
+    RollingHistogram total,
+    RollingHistogram spawn,
+    RollingHistogram firstByte,
+    RollingHistogram parse,
+    RollingHistogram bytes,
+    Counter failures
+) {
+    static final CommandMetrics LIST_SOURCES = of("listSources");
+    static final CommandMetrics LIST_SINKS = of("listSinks");
+    static final CommandMetrics LIST_MODULES = of("listModules");
+    static final CommandMetrics LIST_SINK_INPUTS = of("listSinkInputs");
+    static final CommandMetrics LIST_SOURCE_OUTPUTS = of("listSourceOutputs");
+    static final CommandMetrics LOAD_MODULE = of("loadModule");
+    static final CommandMetrics UNLOAD_MODULE = of("unloadModule");
+
+    private static CommandMetrics of(String command) {
+        final var prefix = "pactl." + command + ".";
+        return new CommandMetrics(
+            Metrics.timer(prefix + "total"),
+            Metrics.timer(prefix + "spawn"),
+            Metrics.timer(prefix + "firstByte"),
+            Metrics.timer(prefix + "parse"),
+            Metrics.histogram(prefix + "bytes", "bytes", 1),
+            Metrics.counter(prefix + "failures")
+        );
+    }
+
+    <T> T timeParse(IOSupplier<T> parser) throws IOException {
+        final var start = System.nanoTime();
+        try {
+            return parser.get();
+        } finally {
+            parse.recordSince(start);
+        }
+    }
+
+    <T> T time(IOSupplier<T> call) throws IOException {
+        final var start = System.nanoTime();
+        try {
+            return call.get();
+        } catch (IOException | RuntimeException e) {
+            failures.increment();
+            throw e;
+        } finally {
+            total.recordSince(start);
+        }
+    }
+}
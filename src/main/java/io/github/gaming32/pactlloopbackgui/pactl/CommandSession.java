@@ -0,0 +1,251 @@
+package io.github.gaming32.pactlloopbackgui.pactl;
+
+import io.github.gaming32.pactlloopbackgui.metrics.Metrics;
+import io.github.gaming32.pactlloopbackgui.metrics.RollingHistogram;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Long-lived shells started through the command wrapper, which run commands sent over their stdin. Expensive wrappers
+// are then only started once per shell, rather than once per command. Each shell runs one command at a time, and each
+// command's output is followed by a delimiter line carrying its exit status and stderr. Up to pactl.sessionShells
+// shells are started as commands run in parallel, and a command that finds them all busy waits for one, for no longer
+// than its query has left.
+final class CommandSession {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CommandSession.class);
+    private static final RollingHistogram SPAWN_TIME = Metrics.timer("pactl.session.spawn");
+    private static final int MAX_SHELLS = Math.max(Integer.getInteger("pactl.sessionShells", 4), 1);
+
+    private final String[] shellCommand;
+    // Random, so that no command output can contain it
+    private final String delimiter = "--pactl-session-" + UUID.randomUUID();
+    private final byte[] outputEnd = ("\n" + delimiter + " ").getBytes(StandardCharsets.US_ASCII);
+
+    // Fair, so that commands get a shell in the order they asked for one
+    private final Semaphore available = new Semaphore(MAX_SHELLS, true);
+    // Shells not running a command. Ones that have died are restarted when they're next taken.
+    private final ConcurrentLinkedDeque<Shell> idle = new ConcurrentLinkedDeque<>();
+    private final List<Shell> shells = new CopyOnWriteArrayList<>();
+
+    CommandSession(String[] wrapper) {
+        shellCommand = Arrays.copyOf(wrapper, wrapper.length + 1);
+        shellCommand[wrapper.length] = "exec sh";
+    }
+
+    Output run(CommandMetrics metrics, String... command) throws IOException {
+        final var startTime = System.nanoTime();
+        final var waitNanos = Cancellation.remainingNanos(TimeUnit.MILLISECONDS.toNanos(ProcessExecution.TIMEOUT_MS));
+        try {
+            if (!available.tryAcquire(waitNanos, TimeUnit.NANOSECONDS)) {
+                throw new PactlProcessException(
+                    String.join(" ", command),
+                    new PactlProcessResult(-1, "", Duration.ofNanos(System.nanoTime() - startTime)),
+                    true
+                );
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a command session");
+        }
+        var shell = idle.pollLast();
+        if (shell == null) {
+            shell = new Shell();
+            shells.add(shell);
+        }
+        try {
+            return shell.run(metrics, startTime, command);
+        } finally {
+            idle.addLast(shell);
+            available.release();
+        }
+    }
+
+    void stop() {
+        shells.forEach(Shell::stop);
+    }
+
+    private final class Shell {
+        @Nullable
+        private Process process;
+        private OutputStream stdin;
+        private BufferedInputStream stdout;
+
+        // Kills the whole shell if the command runs past the process timeout, since the shell can't be told to stop
+        // just the one command
+        synchronized Output run(CommandMetrics metrics, long startTime, String... command) throws IOException {
+            final var script = script(command);
+            if (process == null || !process.isAlive()) {
+                start();
+            }
+            try {
+                stdin.write(script);
+                stdin.flush();
+            } catch (IOException e) {
+                // The shell died before it got the command, so it's safe to send it again to a new one
+                LOGGER.warn("Command session died, restarting it", e);
+                start();
+                try {
+                    stdin.write(script);
+                    stdin.flush();
+                } catch (IOException e2) {
+                    stop();
+                    throw e2;
+                }
+            }
+            // Set on the watchdog thread, and read on this one
+            final var timedOut = new AtomicBoolean();
+            final var session = process;
+            final var watchdog = ProcessExecution.killAfter(
+                session, ProcessExecution.TIMEOUT_MS, () -> timedOut.set(true)
+            );
+            // Also killed if the query this command is for times out first. The shell is restarted by its next command.
+            final var cancellation = Cancellation.onCancel(() -> {
+                timedOut.set(true);
+                ProcessExecution.killTree(session);
+            });
+            try {
+                final var output = readOutput(metrics, startTime);
+                metrics.bytes().record(output.stdout().length);
+                return output;
+            } catch (IOException e) {
+                // The shell's output can't be trusted to line up with the next command anymore
+                stop();
+                if (timedOut.get()) {
+                    throw new PactlProcessException(
+                        String.join(" ", command),
+                        new PactlProcessResult(-1, "", Duration.ofNanos(System.nanoTime() - startTime)),
+                        true
+                    );
+                }
+                throw e;
+            } finally {
+                watchdog.cancel(false);
+                cancellation.close();
+            }
+        }
+
+        synchronized void stop() {
+            if (process != null) {
+                ProcessExecution.killTree(process);
+                process = null;
+            }
+        }
+
+        private void start() throws IOException {
+            stop();
+            LOGGER.info("Starting command session: {}", String.join(" ", shellCommand));
+            final var startTime = System.nanoTime();
+            process = new ProcessBuilder(shellCommand)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+            SPAWN_TIME.recordSince(startTime);
+            stdin = process.getOutputStream();
+            stdout = new BufferedInputStream(process.getInputStream());
+        }
+
+        private Output readOutput(CommandMetrics metrics, long startTime) throws IOException {
+            // outputEnd starts with the only newline in it, so a mismatch can only restart the match at that newline
+            final var output = new ByteArrayOutputStream();
+            var matched = 0;
+            // Peek at the first byte, which is at least the delimiter's newline, to time how long the command took to
+            // start
+            stdout.mark(1);
+            read();
+            stdout.reset();
+            metrics.firstByte().recordSince(startTime);
+            while (matched < outputEnd.length) {
+                final var b = read();
+                if (b == outputEnd[matched]) {
+                    matched++;
+                    continue;
+                }
+                output.write(outputEnd, 0, matched);
+                if (b == outputEnd[0]) {
+                    matched = 1;
+                } else {
+                    matched = 0;
+                    output.write(b);
+                }
+                // The same limit as a separate process has. The rest of the output is left unread, and the shell is
+                // stopped by run.
+                if (output.size() > ProcessExecution.STDOUT_LIMIT) {
+                    throw new IOException("Output is longer than " + ProcessExecution.STDOUT_LIMIT + " bytes");
+                }
+            }
+
+            final var statusLine = readLine();
+            final int exitCode;
+            try {
+                exitCode = Integer.parseInt(statusLine);
+            } catch (NumberFormatException e) {
+                throw new IOException("Malformed command session status: " + statusLine);
+            }
+            final var error = new StringBuilder();
+            String line;
+            while (!(line = readLine()).equals(delimiter)) {
+                if (!error.isEmpty()) {
+                    error.append('\n');
+                }
+                error.append(line);
+            }
+            return new Output(output.toByteArray(), new PactlProcessResult(
+                exitCode, error.toString().strip(), Duration.ofNanos(System.nanoTime() - startTime)
+            ));
+        }
+
+        private String readLine() throws IOException {
+            final var line = new ByteArrayOutputStream();
+            int b;
+            while ((b = read()) != '\n') {
+                line.write(b);
+            }
+            return line.toString(StandardCharsets.UTF_8);
+        }
+
+        private int read() throws IOException {
+            final var b = stdout.read();
+            if (b == -1) {
+                throw new IOException("Command session exited unexpectedly");
+            }
+            return b;
+        }
+    }
+
+    // The command's stderr is captured into a variable, while its stdout goes straight to the session's stdout. Its
+    // stdin is /dev/null so that it can't read the commands that follow it.
+    private byte[] script(String... command) {
+        final var script = new StringBuilder("{ e=$(");
+        for (final var arg : command) {
+            script.append(quote(arg)).append(' ');
+        }
+        script.append("</dev/null 2>&1 >&3 3>&-); } 3>&1; printf '\\n%s %d\\n%s\\n%s\\n' ")
+            .append(quote(delimiter))
+            .append(" $? \"$e\" ")
+            .append(quote(delimiter))
+            .append('\n');
+        return script.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String quote(String arg) {
+        return "'" + arg.replace("'", "'\\''") + "'";
+    }
+
+    record Output(byte[] stdout, PactlProcessResult result) {
+    }
+}
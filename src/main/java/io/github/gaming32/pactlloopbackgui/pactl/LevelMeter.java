@@ -0,0 +1,128 @@
+package io.github.gaming32.pactlloopbackgui.pactl;
+
+import io.github.gaming32.pactlloopbackgui.metrics.Counter;
+import io.github.gaming32.pactlloopbackgui.metrics.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Captures a source, or the monitor of a sink, as mono float samples at a low rate, and keeps the peak and RMS of what
+// it has read. parec's stdout is a plain stream read into one heap buffer per capture, and samples are reduced in place
+// through a little-endian view of it, so nothing is allocated per read.
+public final class LevelMeter implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LevelMeter.class);
+
+    static final String EXECUTABLE = System.getProperty("pactl.meterExecutable", "parec");
+    private static final int RATE = Integer.getInteger("pactl.meterRate", 4000);
+    // RMS is taken over windows of this length, and the peak is the highest sample since the last take
+    private static final int WINDOW_MSEC = 20;
+    private static final int BUFFER_SIZE = 4096;
+    private static final Counter CAPTURES_STARTED = Metrics.counter("meter.capturesStarted");
+
+    private final String device;
+    private final Process process;
+    private final AtomicLong levels = new AtomicLong();
+    private volatile boolean closed;
+
+    LevelMeter(String device, Process process) {
+        this.device = device;
+        this.process = process;
+        CAPTURES_STARTED.increment();
+
+        final var thread = new Thread(this::run, "pactl-meter-" + device);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // The parec arguments for capturing device
+    static String[] arguments(String device) {
+        return new String[] {
+            "--device=" + device,
+            "--rate=" + RATE,
+            "--channels=1",
+            "--format=float32le",
+            "--latency-msec=" + WINDOW_MSEC,
+            "--client-name=pactl-loopback-gui"
+        };
+    }
+
+    private void run() {
+        final var bytes = new byte[BUFFER_SIZE];
+        final var buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        final var windowSamples = Math.max(RATE * WINDOW_MSEC / 1000, 1);
+        var peak = 0f;
+        var sumSquares = 0.0;
+        var count = 0;
+        try (var input = process.getInputStream()) {
+            int n;
+            while ((n = input.read(bytes, buffer.position(), buffer.remaining())) != -1) {
+                buffer.position(buffer.position() + n);
+                buffer.flip();
+                while (buffer.remaining() >= Float.BYTES) {
+                    final var sample = buffer.getFloat();
+                    peak = Math.max(peak, Math.abs(sample));
+                    sumSquares += sample * sample;
+                    if (++count == windowSamples) {
+                        publish(peak, (float) Math.sqrt(sumSquares / count));
+                        peak = 0f;
+                        sumSquares = 0.0;
+                        count = 0;
+                    }
+                }
+                // Keeps any partial sample for the next read
+                buffer.compact();
+            }
+        } catch (IOException e) {
+            if (!closed) {
+                LOGGER.warn("Failed to read level meter capture of {}", device, e);
+            }
+        }
+        process.destroy();
+        if (!closed) {
+            LOGGER.warn("Level meter capture of {} exited unexpectedly", device);
+        }
+    }
+
+    // Merged with anything not yet taken, so that a peak between two takes isn't lost
+    private void publish(float peak, float rms) {
+        levels.accumulateAndGet(pack(peak, rms), LevelMeter::max);
+    }
+
+    // The highest peak and RMS published since the last call, packed into a long, or 0 if nothing was
+    public long take() {
+        return levels.getAndSet(0);
+    }
+
+    public static float peak(long levels) {
+        return Float.intBitsToFloat((int) (levels >>> 32));
+    }
+
+    public static float rms(long levels) {
+        return Float.intBitsToFloat((int) levels);
+    }
+
+    private static long pack(float peak, float rms) {
+        return (long) Float.floatToRawIntBits(peak) << 32 | Float.floatToRawIntBits(rms) & 0xFFFFFFFFL;
+    }
+
+    // Both halves are non-negative floats, whose bits order the same way as their values
+    private static long max(long a, long b) {
+        return Math.max(a & 0xFFFFFFFF00000000L, b & 0xFFFFFFFF00000000L) |
+            Math.max(a & 0xFFFFFFFFL, b & 0xFFFFFFFFL);
+    }
+
+    public boolean isAlive() {
+        return !closed && process.isAlive();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        process.destroy();
+    }
+}
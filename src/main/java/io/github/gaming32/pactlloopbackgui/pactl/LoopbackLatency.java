@@ -0,0 +1,31 @@
+package io.github.gaming32.pactlloopbackgui.pactl;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+// The measured end-to-end latency of each loopback module, in microseconds: the latency of its source output (capture)
+// plus that of its sink input (playback)
+public final class LoopbackLatency {
+    private LoopbackLatency() {
+    }
+
+    public static CompletableFuture<Map<Integer, Long>> fetch(PactlClient client) {
+        final var sinkInputs = client.supply(client::listSinkInputs);
+        final var sourceOutputs = client.supply(client::listSourceOutputs);
+        return CompletableFuture.allOf(sinkInputs, sourceOutputs).thenApply(v -> {
+            final var result = new HashMap<Integer, Long>();
+            addLatencies(result, sinkInputs.join());
+            addLatencies(result, sourceOutputs.join());
+            return result;
+        });
+    }
+
+    private static void addLatencies(Map<Integer, Long> result, List<PactlStream> streams) {
+        for (final var stream : streams) {
+            if (stream.ownerModule() == -1) continue;
+            result.merge(stream.ownerModule(), stream.latencyUsec(), Long::sum);
+        }
+    }
+}
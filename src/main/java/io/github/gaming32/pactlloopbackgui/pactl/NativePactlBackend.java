@@ -0,0 +1,262 @@
+package io.github.gaming32.pactlloopbackgui.pactl;
+
+import io.github.gaming32.pactlloopbackgui.pactl.protocol.PulseCommand;
+import io.github.gaming32.pactlloopbackgui.pactl.protocol.PulseConnection;
+import io.github.gaming32.pactlloopbackgui.pactl.protocol.PulseException;
+import io.github.gaming32.pactlloopbackgui.pactl.protocol.TagStructReader;
+import io.github.gaming32.pactlloopbackgui.pactl.protocol.TagStructWriter;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+// Talks to the server directly over its native protocol socket, rather than going through a pactl process
+public final class NativePactlBackend implements PactlBackend {
+    private static final String CLIENT_NAME = "pactl-loopback-gui";
+
+    private final Path socket;
+    @Nullable
+    private PulseConnection connection;
+
+    public NativePactlBackend(Path socket) {
+        this.socket = socket;
+    }
+
+    public static Path defaultSocket() {
+        final var override = System.getProperty("pactl.nativeSocket");
+        if (override != null) {
+            return Path.of(override);
+        }
+        final var server = System.getenv("PULSE_SERVER");
+        if (server != null && server.startsWith("unix:")) {
+            return Path.of(server.substring(5));
+        }
+        final var runtimeDir = System.getenv("XDG_RUNTIME_DIR");
+        if (runtimeDir == null) {
+            throw new IllegalStateException("XDG_RUNTIME_DIR is not set, and no pactl.nativeSocket was specified");
+        }
+        return Path.of(runtimeDir, "pulse", "native");
+    }
+
+    // The native backend only speaks over unix sockets, so server has to be one, as unix:<path> or just the path
+    public static Path socketOf(String server) {
+        if (server.startsWith("unix:")) {
+            return Path.of(server.substring(5));
+        }
+        if (server.startsWith("/")) {
+            return Path.of(server);
+        }
+        throw new IllegalArgumentException("The native backend only supports unix socket servers, not " + server);
+    }
+
+    @Nullable
+    private static Path defaultCookie() {
+        final var cookie = System.getenv("PULSE_COOKIE");
+        if (cookie != null) {
+            return Path.of(cookie);
+        }
+        final var configHome = System.getenv("XDG_CONFIG_HOME");
+        if (configHome != null) {
+            return Path.of(configHome, "pulse", "cookie");
+        }
+        final var home = System.getProperty("user.home");
+        return home != null ? Path.of(home, ".config", "pulse", "cookie") : null;
+    }
+
+    @Override
+    public List<PactlSourceOrSink> listSources() throws IOException {
+        return listSourcesOrSinks(PulseCommand.GET_SOURCE_INFO_LIST, 22);
+    }
+
+    @Override
+    public List<PactlSourceOrSink> listSinks() throws IOException {
+        return listSourcesOrSinks(PulseCommand.GET_SINK_INFO_LIST, 21);
+    }
+
+    // Sink and source info only differ in which protocol version added formats
+    private List<PactlSourceOrSink> listSourcesOrSinks(int command, int formatsVersion) throws IOException {
+        final var result = new ArrayList<PactlSourceOrSink>();
+        request(command, (reply, version) -> {
+            while (reply.hasRemaining()) {
+                final var index = reply.getU32();
+                final var name = Objects.requireNonNullElse(reply.getString(), "");
+                final var description = Objects.requireNonNullElse(reply.getString(), "");
+                // sample spec, channel map, owner module, volume, mute, monitor index, monitor name, latency,
+                // driver, flags
+                reply.skip(10);
+                if (version >= 13) {
+                    reply.skip(2); // proplist, configured latency
+                }
+                if (version >= 15) {
+                    reply.skip(4); // base volume, state, volume steps, card
+                }
+                if (version >= 16) {
+                    final var ports = reply.getU32();
+                    for (var i = 0; i < ports; i++) {
+                        reply.skip(3); // name, description, priority
+                        if (version >= 24) {
+                            reply.skip(); // available
+                        }
+                        if (version >= 34) {
+                            reply.skip(2); // availability group, type
+                        }
+                    }
+                    reply.skip(); // active port
+                }
+                if (version >= formatsVersion) {
+                    reply.skip(reply.getU8());
+                }
+                result.add(new PactlSourceOrSink(index, name, description));
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public void visitModules(Predicate<String> nameFilter, Predicate<PactlModule> visitor) throws IOException {
+        request(PulseCommand.GET_MODULE_INFO_LIST, (reply, version) -> {
+            while (reply.hasRemaining()) {
+                final var index = reply.getU32();
+                final var name = Objects.requireNonNullElse(reply.getString(), "");
+                final var argument = reply.getString();
+                reply.skip(2); // use count, proplist (or auto unload before version 15)
+                if (!nameFilter.test(name)) continue;
+                final Map<String, String> arguments;
+                if (argument == null || argument.startsWith("{")) {
+                    // PipeWire SPA json configuration is not supported, and is treated as no configuration
+                    arguments = Map.of();
+                } else {
+                    arguments = PactlArguments.parse(argument);
+                }
+                if (!visitor.test(new PactlModule(index, name, arguments))) break;
+            }
+        });
+    }
+
+    @Override
+    public List<PactlStream> listSinkInputs() throws IOException {
+        final var result = new ArrayList<PactlStream>();
+        request(PulseCommand.GET_SINK_INPUT_INFO_LIST, (reply, version) -> {
+            while (reply.hasRemaining()) {
+                final var index = reply.getU32();
+                reply.skip(); // name
+                final var ownerModule = reply.getU32();
+                reply.skip(5); // client, sink, sample spec, channel map, volume
+                final var bufferLatency = reply.getUsec();
+                final var sinkLatency = reply.getUsec();
+                reply.skip(2); // resample method, driver
+                if (version >= 11) {
+                    reply.skip(); // mute
+                }
+                if (version >= 13) {
+                    reply.skip(); // proplist
+                }
+                if (version >= 19) {
+                    reply.skip(); // corked
+                }
+                if (version >= 20) {
+                    reply.skip(2); // has volume, volume writable
+                }
+                if (version >= 21) {
+                    reply.skip(); // format
+                }
+                result.add(new PactlStream(index, ownerModule, bufferLatency, sinkLatency));
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public List<PactlStream> listSourceOutputs() throws IOException {
+        final var result = new ArrayList<PactlStream>();
+        request(PulseCommand.GET_SOURCE_OUTPUT_INFO_LIST, (reply, version) -> {
+            while (reply.hasRemaining()) {
+                final var index = reply.getU32();
+                reply.skip(); // name
+                final var ownerModule = reply.getU32();
+                reply.skip(4); // client, source, sample spec, channel map
+                final var bufferLatency = reply.getUsec();
+                final var sourceLatency = reply.getUsec();
+                reply.skip(2); // resample method, driver
+                if (version >= 13) {
+                    reply.skip(); // proplist
+                }
+                if (version >= 19) {
+                    reply.skip(); // corked
+                }
+                if (version >= 22) {
+                    reply.skip(5); // volume, mute, has volume, volume writable, format
+                }
+                result.add(new PactlStream(index, ownerModule, bufferLatency, sourceLatency));
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public int loadModule(String name, Map<String, String> arguments) throws IOException {
+        final var result = new int[1];
+        request(
+            PulseCommand.LOAD_MODULE,
+            args -> args.putString(name).putString(PactlArguments.toString(arguments)),
+            (reply, version) -> result[0] = reply.getU32()
+        );
+        return result[0];
+    }
+
+    @Override
+    public void unloadModule(int index) throws IOException {
+        request(PulseCommand.UNLOAD_MODULE, args -> args.putU32(index), (reply, version) -> {
+        });
+    }
+
+    private void request(int command, ReplyHandler handler) throws IOException {
+        request(command, args -> {
+        }, handler);
+    }
+
+    private synchronized void request(
+        int command,
+        Consumer<TagStructWriter> arguments,
+        ReplyHandler handler
+    ) throws IOException {
+        if (connection == null) {
+            connection = PulseConnection.connect(socket, PulseConnection.readCookie(defaultCookie()), CLIENT_NAME);
+        }
+        final TagStructReader reply;
+        // Closing the connection is the only way to stop waiting for a reply, if the query this is for times out
+        final var current = connection;
+        final var cancellation = Cancellation.onCancel(() -> closeQuietly(current));
+        try {
+            reply = current.request(command, arguments);
+        } catch (PulseException e) {
+            throw e;
+        } catch (IOException e) {
+            // Drop the connection, so that the next request reconnects
+            current.close();
+            connection = null;
+            throw e;
+        } finally {
+            cancellation.close();
+        }
+        handler.handle(reply, current.version());
+    }
+
+    private static void closeQuietly(PulseConnection connection) {
+        try {
+            connection.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    @FunctionalInterface
+    private interface ReplyHandler {
+        void handle(TagStructReader reply, int version) throws IOException;
+    }
+}
@@ -0,0 +1,28 @@
+package io.github.gaming32.pactlloopbackgui.pactl;
+
+import org.apache.commons.io.function.IOSupplier;
+
+import java.io.IOException;
+import java.util.Objects;
+
+// Remembers the parsed result of a command's output, keyed on a checksum of the raw output. When the output hasn't
+// changed, the previous (immutable) result instance is returned without parsing again, so callers can detect that
+// nothing changed with an identity check.
+final class OutputCache<T> {
+    private long checksum;
+    private int length = -1;
+    private Object key;
+    private T value;
+
+    synchronized T get(long checksum, int length, Object key, IOSupplier<T> parser) throws IOException {
+        if (this.length == length && this.checksum == checksum && Objects.equals(this.key, key)) {
+            return value;
+        }
+        final var result = parser.get();
+        this.checksum = checksum;
+        this.length = length;
+        this.key = key;
+        this.value = result;
+        return result;
+    }
+}
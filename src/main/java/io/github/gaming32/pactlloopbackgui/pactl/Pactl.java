@@ -1,108 +1,69 @@
 package io.github.gaming32.pactlloopbackgui.pactl;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.reflect.TypeToken;
-
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
+// Calls on the default server, the one pactl picks by itself. Other servers have their own PactlClient.
 public final class Pactl {
-    private static final Gson GSON = new GsonBuilder().create();
-    private static final TypeToken<List<PactlSourceOrSink>> SOURCES_OR_SINKS_TYPE = new TypeToken<>() {};
-
-    private static final String[] COMMAND_WRAPPER = Optional.ofNullable(System.getProperty("pactl.commandWrapper"))
-        .map(wrapper -> wrapper.split(" "))
-        .orElse(null);
-
     private Pactl() {
     }
 
+    // Created on first use, since it's not needed when pactl.servers is set, and the native backend can't be created
+    // without a default socket to connect to
+    public static PactlClient defaultClient() {
+        return DefaultClient.INSTANCE;
+    }
+
     public static List<PactlSourceOrSink> listSources() throws IOException {
-        return listSourcesOrSinks("sources");
+        return defaultClient().listSources();
     }
 
     public static List<PactlSourceOrSink> listSinks() throws IOException {
-        return listSourcesOrSinks("sinks");
+        return defaultClient().listSinks();
     }
 
-    private static List<PactlSourceOrSink> listSourcesOrSinks(String what) throws IOException {
-        try (var reader = runProcess("--format", "json", "list", what)) {
-            return GSON.fromJson(reader, SOURCES_OR_SINKS_TYPE);
-        }
+    public static List<PactlModule> listModules() throws IOException {
+        return defaultClient().listModules();
     }
 
-    public static List<PactlModule> listModules() throws IOException {
-        final var result = new ArrayList<PactlModule>();
-        try (var reader = runProcess("list", "short", "modules")) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                final var parts = line.split("\t", 4);
-                final Map<String, String> arguments;
-                if (parts.length == 3 && parts[2].equals("{")) {
-                    // PipeWire SPA json configuration is not supported, and is treated as no configuration
-                    arguments = Map.of();
-                    while ((line = reader.readLine()) != null) {
-                        if (line.trim().equals("}")) break;
-                    }
-                    if (line == null) {
-                        throw new IOException("Unterminated SPA configuration");
-                    }
-                } else {
-                    arguments = PactlArguments.parse(parts[2]);
-                }
-                result.add(new PactlModule(Integer.parseInt(parts[0]), parts[1], arguments));
-            }
-        }
-        return result;
+    public static List<PactlModule> listModules(Predicate<String> nameFilter) throws IOException {
+        return defaultClient().listModules(nameFilter);
+    }
+
+    public static void visitModules(Predicate<String> nameFilter, Predicate<PactlModule> visitor) throws IOException {
+        defaultClient().visitModules(nameFilter, visitor);
+    }
+
+    public static List<PactlStream> listSinkInputs() throws IOException {
+        return defaultClient().listSinkInputs();
+    }
+
+    public static List<PactlStream> listSourceOutputs() throws IOException {
+        return defaultClient().listSourceOutputs();
     }
 
     public static int loadModule(String name) throws IOException {
-        return loadModule(name, Map.of());
+        return defaultClient().loadModule(name);
     }
 
     public static int loadModule(String name, Map<String, String> arguments) throws IOException {
-        try (var reader = runProcess("load-module", name, PactlArguments.toString(arguments))) {
-            return Integer.parseInt(reader.readLine().trim());
-        }
+        return defaultClient().loadModule(name, arguments);
     }
 
     public static void unloadModule(int index) throws IOException {
-        runProcess("unload-module", Integer.toString(index)).close();
+        defaultClient().unloadModule(index);
     }
 
-    private static BufferedReader runProcess(String... command) throws IOException {
-        final String[] fullCommand;
-        if (COMMAND_WRAPPER != null) {
-            fullCommand = Arrays.copyOf(COMMAND_WRAPPER, COMMAND_WRAPPER.length + 1);
-            fullCommand[COMMAND_WRAPPER.length] = "pactl " + String.join(" ", command);
-        } else {
-            fullCommand = new String[command.length + 1];
-            fullCommand[0] = "pactl";
-            System.arraycopy(command, 0, fullCommand, 1, command.length);
-        }
+    public static PactlSubscription subscribe(Consumer<PactlEvent> listener, Runnable onEnd) throws IOException {
+        return defaultClient().subscribe(listener, onEnd);
+    }
 
-        final var process = new ProcessBuilder(fullCommand).start();
-        return new BufferedReader(process.inputReader()) {
-            @Override
-            public void close() throws IOException {
-                super.close();
-                try {
-                    if (process.waitFor() != 0) {
-                        try (var reader = process.errorReader()) {
-                            throw new IOException(reader.lines().collect(Collectors.joining("\n")));
-                        }
-                    }
-                } catch (InterruptedException e) {
-                    throw new IllegalStateException(e);
-                }
-            }
-        };
+    private static final class DefaultClient {
+        static final PactlClient INSTANCE = new PactlClient(
+            "default", null, System.getProperty("pactl.commandWrapper")
+        );
     }
 }
@@ -2,7 +2,6 @@ package io.github.gaming32.pactlloopbackgui.pactl;
 
 import org.jetbrains.annotations.Nullable;
 
-import java.util.LinkedHashMap;
 import java.util.Locale;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -13,6 +12,9 @@ public final class PactlArguments {
 
     @Nullable
     public static Integer getInt(Map<String, String> arguments, String key) {
+        if (arguments instanceof ParsedArguments parsed) {
+            return parsed.getInt(key);
+        }
         return parseInt(arguments.get(key));
     }
 
@@ -21,6 +23,7 @@ public final class PactlArguments {
         return result != null ? result : defaultValue;
     }
 
+    // arguments has to be editable, which the maps from parse aren't. Returns the previous value.
     @Nullable
     public static Integer putInt(Map<String, String> arguments, String key, int value) {
         return parseInt(arguments.put(key, Integer.toString(value)));
@@ -80,21 +83,27 @@ public final class PactlArguments {
     }
 
     // Based on pa_modargs_new
-    public static Map<String, String> parse(String arguments) throws IllegalArgumentException {
-        final var result = new LinkedHashMap<String, String>();
+    public static ParsedArguments parse(String arguments) throws IllegalArgumentException {
+        return parse(arguments, 0, arguments.length());
+    }
+
+    // Parses arguments[start, end) without copying it. Reported positions are relative to the whole string.
+    public static ParsedArguments parse(String arguments, int start, int end) throws IllegalArgumentException {
+        final var result = new ParsedArguments(arguments);
 
         enum State {
             WHITESPACE, KEY, VALUE_START, VALUE_SIMPLE, VALUE_DOUBLE_QUOTES, VALUE_TICKS
         }
 
         var keyStart = 0;
-        var keyLength = 0;
+        var keyEnd = 0;
         var valueStart = 0;
-        var valueLength = 0;
 
+        // None of the delimiters are surrogates, and no supplementary code point is whitespace, so this doesn't need
+        // to handle code points
         var state = State.WHITESPACE;
-        for (var i = 0; i < arguments.length(); ) {
-            final var c = arguments.codePointAt(i);
+        for (var i = start; i < end; i++) {
+            final var c = arguments.charAt(i);
             switch (state) {
                 case WHITESPACE -> {
                     if (c == '=') {
@@ -102,91 +111,55 @@ public final class PactlArguments {
                     }
                     if (!Character.isWhitespace(c)) {
                         keyStart = i;
-                        keyLength = 1;
                         state = State.KEY;
                     }
                 }
                 case KEY -> {
                     if (c == '=') {
+                        keyEnd = i;
                         state = State.VALUE_START;
-                    } else {
-                        keyLength++;
                     }
                 }
                 case VALUE_START -> {
                     if (c == '\'') {
                         state = State.VALUE_TICKS;
                         valueStart = i + 1;
-                        valueLength = 0;
                     } else if (c == '"') {
                         state = State.VALUE_DOUBLE_QUOTES;
                         valueStart = i + 1;
-                        valueLength = 0;
                     } else if (Character.isWhitespace(c)) {
-                        if (result.put(arguments.substring(keyStart, keyStart + keyLength), "") != null) {
-                            throw new IllegalArgumentException("Duplicate key at position " + keyStart);
-                        }
+                        result.add(keyStart, keyEnd, i, i);
                         state = State.WHITESPACE;
                     } else {
                         state = State.VALUE_SIMPLE;
                         valueStart = i;
-                        valueLength = 1;
                     }
                 }
                 case VALUE_SIMPLE -> {
                     if (Character.isWhitespace(c)) {
-                        if (result.put(
-                            arguments.substring(keyStart, keyStart + keyLength),
-                            arguments.substring(valueStart, valueStart + valueLength)
-                        ) != null) {
-                            throw new IllegalArgumentException("Duplicate key at position " + keyStart);
-                        }
+                        result.add(keyStart, keyEnd, valueStart, i);
                         state = State.WHITESPACE;
-                    } else {
-                        valueLength++;
                     }
                 }
                 case VALUE_DOUBLE_QUOTES -> {
                     if (c == '"') {
-                        if (result.put(
-                            arguments.substring(keyStart, keyStart + keyLength),
-                            arguments.substring(valueStart, valueStart + valueLength)
-                        ) != null) {
-                            throw new IllegalArgumentException("Duplicate key at position " + keyStart);
-                        }
+                        result.add(keyStart, keyEnd, valueStart, i);
                         state = State.WHITESPACE;
-                    } else {
-                        valueLength++;
                     }
                 }
                 case VALUE_TICKS -> {
                     if (c == '\'') {
-                        if (result.put(
-                            arguments.substring(keyStart, keyStart + keyLength),
-                            arguments.substring(valueStart, valueStart + valueLength)
-                        ) != null) {
-                            throw new IllegalArgumentException("Duplicate key at position " + keyStart);
-                        }
+                        result.add(keyStart, keyEnd, valueStart, i);
                         state = State.WHITESPACE;
-                    } else {
-                        valueLength++;
                     }
                 }
             }
-            i += Character.charCount(c);
         }
 
         if (state == State.VALUE_START) {
-            if (result.put(arguments.substring(keyStart, keyStart + keyLength), "") != null) {
-                throw new IllegalArgumentException("Duplicate key at position " + keyStart);
-            }
+            result.add(keyStart, keyEnd, end, end);
         } else if (state == State.VALUE_SIMPLE) {
-            if (result.put(
-                arguments.substring(keyStart, keyStart + keyLength),
-                arguments.substring(valueStart)
-            ) != null) {
-                throw new IllegalArgumentException("Duplicate key at position " + keyStart);
-            }
+            result.add(keyStart, keyEnd, valueStart, end);
         } else if (state != State.WHITESPACE) {
             throw new IllegalArgumentException("Unexpected end of argument");
         }
@@ -0,0 +1,65 @@
+package io.github.gaming32.pactlloopbackgui.pactl;
+
+import org.apache.commons.io.function.IOSupplier;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
+
+// Asynchronous calls on the default server, run on its workers
+public final class PactlAsync {
+    private PactlAsync() {
+    }
+
+    public static CompletableFuture<List<PactlSourceOrSink>> listSources() {
+        return supply(Pactl::listSources);
+    }
+
+    public static CompletableFuture<List<PactlSourceOrSink>> listSinks() {
+        return supply(Pactl::listSinks);
+    }
+
+    public static CompletableFuture<List<PactlModule>> listModules() {
+        return supply(Pactl::listModules);
+    }
+
+    public static CompletableFuture<List<PactlModule>> listModules(Predicate<String> nameFilter) {
+        return supply(() -> Pactl.listModules(nameFilter));
+    }
+
+    public static CompletableFuture<List<PactlStream>> listSinkInputs() {
+        return supply(Pactl::listSinkInputs);
+    }
+
+    public static CompletableFuture<List<PactlStream>> listSourceOutputs() {
+        return supply(Pactl::listSourceOutputs);
+    }
+
+    public static CompletableFuture<Integer> loadModule(String name) {
+        return supply(() -> Pactl.loadModule(name));
+    }
+
+    public static CompletableFuture<Integer> loadModule(String name, Map<String, String> arguments) {
+        return supply(() -> Pactl.loadModule(name, arguments));
+    }
+
+    public static CompletableFuture<Void> unloadModule(int index) {
+        return supply(() -> {
+            Pactl.unloadModule(index);
+            return null;
+        });
+    }
+
+    public static CompletableFuture<PactlBatchResult> applyBatch(List<PactlOp> ops, boolean atomic) {
+        return Pactl.defaultClient().applyBatch(ops, atomic);
+    }
+
+    public static CompletableFuture<PactlBatchResult> applyBatch(List<PactlOp> ops, int parallelism, boolean atomic) {
+        return Pactl.defaultClient().applyBatch(ops, parallelism, atomic);
+    }
+
+    public static <T> CompletableFuture<T> supply(IOSupplier<T> action) {
+        return Pactl.defaultClient().supply(action);
+    }
+}
@@ -0,0 +1,35 @@
+package io.github.gaming32.pactlloopbackgui.pactl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+public interface PactlBackend {
+    List<PactlSourceOrSink> listSources() throws IOException;
+
+    List<PactlSourceOrSink> listSinks() throws IOException;
+
+    default List<PactlModule> listModules() throws IOException {
+        return listModules(name -> true);
+    }
+
+    default List<PactlModule> listModules(Predicate<String> nameFilter) throws IOException {
+        final var result = new ArrayList<PactlModule>();
+        visitModules(nameFilter, result::add);
+        return result;
+    }
+
+    // Calls visitor with each module whose name passes nameFilter, until it returns false. The arguments of modules that
+    // don't pass the filter aren't parsed.
+    void visitModules(Predicate<String> nameFilter, Predicate<PactlModule> visitor) throws IOException;
+
+    List<PactlStream> listSinkInputs() throws IOException;
+
+    List<PactlStream> listSourceOutputs() throws IOException;
+
+    int loadModule(String name, Map<String, String> arguments) throws IOException;
+
+    void unloadModule(int index) throws IOException;
+}
@@ -0,0 +1,104 @@
+package io.github.gaming32.pactlloopbackgui.pactl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Runs the ops of a batch on at most parallelism workers. Each worker takes the next op until there are none left, so a
+// slow op only holds up its own worker.
+final class PactlBatch {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PactlBatch.class);
+
+    private final PactlClient client;
+    private final List<PactlOp> ops;
+    private final int parallelism;
+    private final boolean atomic;
+
+    private final PactlBatchResult.Outcome[] outcomes;
+    private final AtomicInteger nextOp = new AtomicInteger();
+    private final AtomicInteger runningWorkers;
+    private volatile boolean failed;
+    private final CompletableFuture<PactlBatchResult> result = new CompletableFuture<>();
+
+    private PactlBatch(PactlClient client, List<PactlOp> ops, int parallelism, boolean atomic) {
+        this.client = client;
+        this.ops = ops;
+        this.parallelism = parallelism;
+        this.atomic = atomic;
+        outcomes = new PactlBatchResult.Outcome[ops.size()];
+        runningWorkers = new AtomicInteger(Math.min(parallelism, ops.size()));
+    }
+
+    static CompletableFuture<PactlBatchResult> apply(
+        PactlClient client, List<PactlOp> ops, int parallelism, boolean atomic
+    ) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        }
+        if (ops.isEmpty()) {
+            return CompletableFuture.completedFuture(new PactlBatchResult(List.of(), false));
+        }
+        final var batch = new PactlBatch(client, List.copyOf(ops), parallelism, atomic);
+        for (var i = batch.runningWorkers.get(); i > 0; i--) {
+            client.execute(batch::work);
+        }
+        return batch.result;
+    }
+
+    private void work() {
+        int i;
+        while ((i = nextOp.getAndIncrement()) < ops.size()) {
+            final var op = ops.get(i);
+            if (atomic && failed) {
+                outcomes[i] = new PactlBatchResult.Outcome(
+                    op, -1, new CancellationException("Skipped after an earlier operation failed")
+                );
+                continue;
+            }
+            try {
+                outcomes[i] = new PactlBatchResult.Outcome(op, op.run(client), null);
+            } catch (IOException | RuntimeException e) {
+                outcomes[i] = new PactlBatchResult.Outcome(op, -1, e);
+                failed = true;
+            }
+        }
+        // The last worker out sees every outcome written by the others
+        if (runningWorkers.decrementAndGet() == 0) {
+            finish();
+        }
+    }
+
+    private void finish() {
+        final var outcomeList = Arrays.asList(outcomes);
+        if (!atomic || !failed) {
+            result.complete(new PactlBatchResult(outcomeList, false));
+            return;
+        }
+
+        // Unloads can't be undone, since the arguments of the unloaded module aren't known here, so only loads are
+        // rolled back
+        final var rollback = new ArrayList<PactlOp>();
+        for (final var outcome : outcomes) {
+            if (outcome.succeeded() && outcome.op() instanceof PactlOp.Load) {
+                rollback.add(new PactlOp.Unload(outcome.module()));
+            }
+        }
+        apply(client, rollback, parallelism, false).whenComplete((rollbackResult, ex) -> {
+            if (ex != null) {
+                result.completeExceptionally(ex);
+                return;
+            }
+            for (final var failure : rollbackResult.failures()) {
+                LOGGER.error("Failed to roll back {}", failure.op(), failure.error());
+            }
+            result.complete(new PactlBatchResult(outcomeList, rollbackResult.succeeded()));
+        });
+    }
+}
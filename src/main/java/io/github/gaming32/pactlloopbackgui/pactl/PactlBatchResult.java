@@ -0,0 +1,25 @@
+package io.github.gaming32.pactlloopbackgui.pactl;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+// outcomes are in the same order as the ops of the batch. rolledBack is only set for atomic batches that failed, once
+// every module they loaded has been unloaded again.
+public record PactlBatchResult(List<Outcome> outcomes, boolean rolledBack) {
+    public boolean succeeded() {
+        return outcomes.stream().allMatch(Outcome::succeeded);
+    }
+
+    public List<Outcome> failures() {
+        return outcomes.stream().filter(outcome -> !outcome.succeeded()).toList();
+    }
+
+    // module is the index returned by PactlOp.run, and error is null if it succeeded. Ops skipped because an atomic
+    // batch had already failed have a CancellationException as their error.
+    public record Outcome(PactlOp op, int module, @Nullable Throwable error) {
+        public boolean succeeded() {
+            return error == null;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package io.github.gaming32.pactlloopbackgui.pactl;
+
+import org.apache.commons.io.function.IOSupplier;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+// One PulseAudio or PipeWire server, reached through pactl --server, a command wrapper, or both. Every client has its
+// own backend, worker threads, and snapshot caches, so a slow or dead server only holds up the callers of its client.
+public final class PactlClient {
+    public static final int BATCH_PARALLELISM = Integer.getInteger("pactl.batchParallelism", 4);
+
+    private final String name;
+    @Nullable
+    private final String server;
+    private final PactlBackend backend;
+    // Used for subscribe, which always goes through pactl. The same instance as backend for the process backend.
+    private final ProcessPactlBackend processBackend;
+    private final ExecutorService executor;
+    final PactlSnapshot.Indexes snapshotIndexes = new PactlSnapshot.Indexes();
+
+    // server is passed to pactl as --server, and is the PULSE_SERVER address of the server. If it's null, pactl picks
+    // the server by itself. commandWrapper runs every pactl command through another command, such as one that enters a
+    // container.
+    public PactlClient(String name, @Nullable String server, @Nullable String commandWrapper) {
+        this.name = name;
+        this.server = server;
+        processBackend = new ProcessPactlBackend(server, commandWrapper);
+        backend = switch (System.getProperty("pactl.backend", "process").toLowerCase(Locale.ROOT)) {
+            case "process" -> processBackend;
+            case "native" -> new NativePactlBackend(
+                server != null ? NativePactlBackend.socketOf(server) : NativePactlBackend.defaultSocket()
+            );
+            default -> throw new IllegalArgumentException("Unknown pactl.backend " + System.getProperty("pactl.backend"));
+        };
+
+        final var threadId = new AtomicInteger();
+        executor = Executors.newCachedThreadPool(task -> {
+            final var thread = new Thread(task, "pactl-" + name + "-worker-" + threadId.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Parses pactl.servers, a semicolon separated list of name=target entries, where target is either a PULSE_SERVER
+    // address, or wrapper:<command> to run pactl through a command wrapper. An empty target is the default server.
+    // Without pactl.servers, there's just the default server.
+    public static List<PactlClient> configured() {
+        final var servers = System.getProperty("pactl.servers");
+        if (servers == null || servers.isBlank()) {
+            return List.of(Pactl.defaultClient());
+        }
+        final var result = new ArrayList<PactlClient>();
+        for (final var entry : servers.split(";")) {
+            if (entry.isBlank()) continue;
+            final var equals = entry.indexOf('=');
+            final var name = (equals != -1 ? entry.substring(0, equals) : entry).strip();
+            final var target = (equals != -1 ? entry.substring(equals + 1) : entry).strip();
+            if (target.startsWith("wrapper:")) {
+                result.add(new PactlClient(name, null, target.substring(8).strip()));
+            } else {
+                result.add(new PactlClient(name, target.isEmpty() ? null : target, null));
+            }
+        }
+        return result;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    @Nullable
+    public String server() {
+        return server;
+    }
+
+    public List<PactlSourceOrSink> listSources() throws IOException {
+        return CommandMetrics.LIST_SOURCES.time(backend::listSources);
+    }
+
+    public List<PactlSourceOrSink> listSinks() throws IOException {
+        return CommandMetrics.LIST_SINKS.time(backend::listSinks);
+    }
+
+    public List<PactlModule> listModules() throws IOException {
+        return CommandMetrics.LIST_MODULES.time(backend::listModules);
+    }
+
+    public List<PactlModule> listModules(Predicate<String> nameFilter) throws IOException {
+        return CommandMetrics.LIST_MODULES.time(() -> backend.listModules(nameFilter));
+    }
+
+    public void visitModules(Predicate<String> nameFilter, Predicate<PactlModule> visitor) throws IOException {
+        CommandMetrics.LIST_MODULES.time(() -> {
+            backend.visitModules(nameFilter, visitor);
+            return null;
+        });
+    }
+
+    public List<PactlStream> listSinkInputs() throws IOException {
+        return CommandMetrics.LIST_SINK_INPUTS.time(backend::listSinkInputs);
+    }
+
+    public List<PactlStream> listSourceOutputs() throws IOException {
+        return CommandMetrics.LIST_SOURCE_OUTPUTS.time(backend::listSourceOutputs);
+    }
+
+    public int loadModule(String name) throws IOException {
+        return loadModule(name, Map.of());
+    }
+
+    public int loadModule(String name, Map<String, String> arguments) throws IOException {
+        return CommandMetrics.LOAD_MODULE.time(() -> backend.loadModule(name, arguments));
+    }
+
+    public void unloadModule(int index) throws IOException {
+        CommandMetrics.UNLOAD_MODULE.time(() -> {
+            backend.unloadModule(index);
+            return null;
+        });
+    }
+
+    public PactlSubscription subscribe(Consumer<PactlEvent> listener, Runnable onEnd) throws IOException {
+        final var process = new ProcessBuilder(processBackend.buildCommand("subscribe"))
+            .redirectError(ProcessBuilder.Redirect.DISCARD)
+            .start();
+        return new PactlSubscription(process, listener, onEnd);
+    }
+
+    // Starts capturing a source, or the monitor of a sink, for a level meter. Always goes through parec, since the native
+    // backend doesn't support record streams.
+    public LevelMeter openLevelMeter(PactlSourceOrSink device, boolean sink) throws IOException {
+        final var name = sink ? device.name() + ".monitor" : device.name();
+        final var process = new ProcessBuilder(
+            processBackend.buildToolCommand(LevelMeter.EXECUTABLE, LevelMeter.arguments(name))
+        )
+            .redirectError(ProcessBuilder.Redirect.DISCARD)
+            .start();
+        return new LevelMeter(name, process);
+    }
+
+    public CompletableFuture<PactlBatchResult> applyBatch(List<PactlOp> ops, boolean atomic) {
+        return applyBatch(ops, BATCH_PARALLELISM, atomic);
+    }
+
+    // Runs up to parallelism ops at once. If atomic is set, the first failure stops any further ops from starting, and
+    // any modules the batch loaded are unloaded again.
+    public CompletableFuture<PactlBatchResult> applyBatch(List<PactlOp> ops, int parallelism, boolean atomic) {
+        return PactlBatch.apply(this, ops, parallelism, atomic);
+    }
+
+    // Runs action on this client's workers
+    public <T> CompletableFuture<T> supply(IOSupplier<T> action) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return action.get();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, executor);
+    }
+
+    // Like supply, but fails with a TimeoutException after timeoutMs. The pactl process, command session, or native
+    // connection the action is waiting on is then killed, so that the worker is freed rather than left blocked.
+    public <T> CompletableFuture<T> supply(IOSupplier<T> action, long timeoutMs) {
+        final var cancellation = new Cancellation(timeoutMs);
+        return supply(() -> cancellation.run(action))
+            .orTimeout(timeoutMs, TimeUnit.MILLISECONDS)
+            .whenComplete((result, ex) -> {
+                if (ex instanceof TimeoutException) {
+                    cancellation.cancel();
+                }
+            });
+    }
+
+    void execute(Runnable task) {
+        executor.execute(task);
+    }
+
+    @Override
+    public String toString() {
+        return server != null ? name + " (" + server + ")" : name;
+    }
+}
@@ -0,0 +1,70 @@
+package io.github.gaming32.pactlloopbackgui.pactl;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Locale;
+
+public record PactlEvent(Type type, Facility facility, int index) {
+    private static final String PREFIX = "Event '";
+    private static final String ON = "' on ";
+
+    // Parses a line of pactl subscribe output, such as "Event 'new' on sink-input #42"
+    @Nullable
+    public static PactlEvent parse(String line) {
+        if (!line.startsWith(PREFIX)) {
+            return null;
+        }
+        final var typeEnd = line.indexOf(ON, PREFIX.length());
+        final var hash = line.lastIndexOf(" #");
+        if (typeEnd == -1 || hash < typeEnd + ON.length()) {
+            return null;
+        }
+        final var type = Type.byName(line.substring(PREFIX.length(), typeEnd));
+        final var facility = Facility.byName(line.substring(typeEnd + ON.length(), hash));
+        if (type == null || facility == null) {
+            return null;
+        }
+        try {
+            return new PactlEvent(type, facility, Integer.parseInt(line, hash + 2, line.length(), 10));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return PREFIX + type.id + ON + facility.id + " #" + index;
+    }
+
+    public enum Type {
+        NEW, CHANGE, REMOVE;
+
+        private final String id = name().toLowerCase(Locale.ROOT);
+
+        @Nullable
+        private static Type byName(String name) {
+            for (final var type : values()) {
+                if (type.id.equals(name)) {
+                    return type;
+                }
+            }
+            return null;
+        }
+    }
+
+    public enum Facility {
+        SINK, SOURCE, SINK_INPUT, SOURCE_OUTPUT, MODULE, CLIENT, SAMPLE_CACHE, SERVER, CARD;
+
+        private final String id = name().toLowerCase(Locale.ROOT).replace('_', '-');
+
+        @Nullable
+        private static Facility byName(String name) {
+            for (final var facility : values()) {
+                if (facility.id.equals(name)) {
+                    return facility;
+                }
+            }
+            return null;
+        }
+    }
+}
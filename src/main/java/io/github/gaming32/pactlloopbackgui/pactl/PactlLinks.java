@@ -0,0 +1,135 @@
+package io.github.gaming32.pactlloopbackgui.pactl;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.List;
+
+// Loopback modules by source and sink. Each pair is packed into one long key, and the keys and modules are kept in two
+// parallel arrays sorted by key. Lookups are binary searches, the links of one source are a contiguous run, and
+// nothing is boxed.
+public final class PactlLinks {
+    public static final PactlLinks EMPTY = new PactlLinks(new long[0], new PactlModule[0]);
+
+    final long[] keys;
+    final PactlModule[] modules;
+
+    private PactlLinks(long[] keys, PactlModule[] modules) {
+        this.keys = keys;
+        this.modules = modules;
+    }
+
+    // Modules without a source or sink are left out, and later modules win over earlier ones for the same pair. Modules
+    // equal to the ones in previous are replaced by them, so unchanged links keep their instances across refreshes.
+    static PactlLinks index(List<PactlModule> modules, PactlLinks previous) {
+        final var moduleKeys = new long[modules.size()];
+        final var moduleIndices = new int[modules.size()];
+        var count = 0;
+        for (var i = 0; i < modules.size(); i++) {
+            final var arguments = modules.get(i).arguments();
+            final var source = PactlArguments.getIntOrDefault(arguments, "source", -1);
+            final var sink = PactlArguments.getIntOrDefault(arguments, "sink", -1);
+            if (source < 0 || sink < 0) continue;
+            moduleKeys[count] = key(source, sink);
+            moduleIndices[count++] = i;
+        }
+
+        final var keys = Arrays.copyOf(moduleKeys, count);
+        Arrays.sort(keys);
+        var size = 0;
+        for (var i = 0; i < count; i++) {
+            if (size == 0 || keys[size - 1] != keys[i]) {
+                keys[size++] = keys[i];
+            }
+        }
+
+        final var result = new PactlModule[size];
+        for (var i = 0; i < count; i++) {
+            final var key = moduleKeys[i];
+            final var module = modules.get(moduleIndices[i]);
+            final var old = previous.get(key);
+            result[Arrays.binarySearch(keys, 0, size, key)] = module.equals(old) ? old : module;
+        }
+        return new PactlLinks(size == count ? keys : Arrays.copyOf(keys, size), result);
+    }
+
+    public static long key(int source, int sink) {
+        return (long) source << 32 | (sink & 0xFFFFFFFFL);
+    }
+
+    public static int source(long key) {
+        return (int) (key >>> 32);
+    }
+
+    public static int sink(long key) {
+        return (int) key;
+    }
+
+    public int size() {
+        return keys.length;
+    }
+
+    public boolean isEmpty() {
+        return keys.length == 0;
+    }
+
+    @Nullable
+    public PactlModule get(int source, int sink) {
+        return get(key(source, sink));
+    }
+
+    @Nullable
+    public PactlModule get(long key) {
+        final var index = Arrays.binarySearch(keys, key);
+        return index >= 0 ? modules[index] : null;
+    }
+
+    public boolean contains(int source, int sink) {
+        return Arrays.binarySearch(keys, key(source, sink)) >= 0;
+    }
+
+    public void forEach(Visitor visitor) {
+        for (var i = 0; i < keys.length; i++) {
+            visitor.visit(source(keys[i]), sink(keys[i]), modules[i]);
+        }
+    }
+
+    public void forEachOfSource(int source, Visitor visitor) {
+        // The first key of the source is where key(source, 0) would go, since sinks are never negative
+        var i = Arrays.binarySearch(keys, key(source, 0));
+        if (i < 0) {
+            i = -i - 1;
+        }
+        for (; i < keys.length && source(keys[i]) == source; i++) {
+            visitor.visit(source, sink(keys[i]), modules[i]);
+        }
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj == this ||
+            obj instanceof PactlLinks other && Arrays.equals(keys, other.keys) && Arrays.equals(modules, other.modules);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(keys) + Arrays.hashCode(modules);
+    }
+
+    @Override
+    public String toString() {
+        final var result = new StringBuilder("PactlLinks[");
+        for (var i = 0; i < keys.length; i++) {
+            if (i > 0) {
+                result.append(", ");
+            }
+            result.append(source(keys[i])).append("->").append(sink(keys[i])).append('=').append(modules[i].index());
+        }
+        return result.append(']').toString();
+    }
+
+    @FunctionalInterface
+    public interface Visitor {
+        void visit(int source, int sink, PactlModule module);
+    }
+}
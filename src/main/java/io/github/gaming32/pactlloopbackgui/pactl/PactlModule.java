@@ -3,6 +3,10 @@ package io.github.gaming32.pactlloopbackgui.pactl;
 import java.util.Map;
 
 public record PactlModule(int index, String name, Map<String, String> arguments) {
+    public PactlModule {
+        name = StringPool.intern(name);
+    }
+
     @Override
     public String toString() {
         return index + "\t" + name + "\t" + PactlArguments.toString(arguments);
@@ -0,0 +1,25 @@
+package io.github.gaming32.pactlloopbackgui.pactl;
+
+import java.io.IOException;
+import java.util.Map;
+
+// A single module operation, as run by PactlClient.applyBatch
+public sealed interface PactlOp permits PactlOp.Load, PactlOp.Unload {
+    // Returns the index of the module that was loaded or unloaded
+    int run(PactlClient client) throws IOException;
+
+    record Load(String name, Map<String, String> arguments) implements PactlOp {
+        @Override
+        public int run(PactlClient client) throws IOException {
+            return client.loadModule(name, arguments);
+        }
+    }
+
+    record Unload(int index) implements PactlOp {
+        @Override
+        public int run(PactlClient client) throws IOException {
+            client.unloadModule(index);
+            return index;
+        }
+    }
+}
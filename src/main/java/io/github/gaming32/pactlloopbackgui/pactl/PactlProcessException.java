@@ -0,0 +1,39 @@
+package io.github.gaming32.pactlloopbackgui.pactl;
+
+import java.io.IOException;
+
+// A pactl process that exited with a non-zero status, or that was killed for running past its timeout
+public class PactlProcessException extends IOException {
+    private final String command;
+    private final PactlProcessResult result;
+    private final boolean timedOut;
+
+    public PactlProcessException(String command, PactlProcessResult result, boolean timedOut) {
+        super(message(command, result, timedOut));
+        this.command = command;
+        this.result = result;
+        this.timedOut = timedOut;
+    }
+
+    private static String message(String command, PactlProcessResult result, boolean timedOut) {
+        if (timedOut) {
+            return command + " timed out after " + result.duration().toMillis() + "ms";
+        }
+        if (!result.stderr().isEmpty()) {
+            return result.stderr();
+        }
+        return command + " exited with status " + result.exitCode();
+    }
+
+    public String getCommand() {
+        return command;
+    }
+
+    public PactlProcessResult getResult() {
+        return result;
+    }
+
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+}
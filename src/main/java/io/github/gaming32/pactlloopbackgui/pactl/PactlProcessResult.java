@@ -0,0 +1,7 @@
+package io.github.gaming32.pactlloopbackgui.pactl;
+
+import java.time.Duration;
+
+// How a pactl process finished. stderr may be truncated if the process wrote a lot to it.
+public record PactlProcessResult(int exitCode, String stderr, Duration duration) {
+}
@@ -0,0 +1,124 @@
+package io.github.gaming32.pactlloopbackgui.pactl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiFunction;
+import java.util.function.Predicate;
+
+public record PactlSnapshot(
+    Map<Integer, PactlSourceOrSink> sources,
+    Map<Integer, PactlSourceOrSink> sinks,
+    PactlLinks links
+) {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PactlSnapshot.class);
+
+    private static final long QUERY_TIMEOUT_MS = Long.getLong("pactl.queryTimeout", 5000);
+
+    // Kept as a constant, since Pactl only reuses cached module listings for the same filter instance
+    private static final Predicate<String> LOOPBACK_FILTER = "module-loopback"::equals;
+
+    public static final PactlSnapshot EMPTY = new PactlSnapshot(Map.of(), Map.of(), PactlLinks.EMPTY);
+
+    // Runs all three queries at once. Any query that fails or times out keeps its value from previous. If nothing
+    // changed, previous itself is returned, so an identity check is enough to tell that there's nothing to update.
+    public static CompletableFuture<PactlSnapshot> fetch(PactlClient client, PactlSnapshot previous) {
+        final var sources = fetchSources(client, previous.sources);
+        final var sinks = fetchSinks(client, previous.sinks);
+        final var links = fetchLinks(client, previous.links);
+        return CompletableFuture.allOf(sources, sinks, links).thenApply(v -> {
+            if (sources.join() == previous.sources && sinks.join() == previous.sinks && links.join() == previous.links) {
+                return previous;
+            }
+            return new PactlSnapshot(sources.join(), sinks.join(), links.join());
+        });
+    }
+
+    public static CompletableFuture<Map<Integer, PactlSourceOrSink>> fetchSources(
+        PactlClient client, Map<Integer, PactlSourceOrSink> previous
+    ) {
+        final var sources = client.supply(client::listSources, QUERY_TIMEOUT_MS).thenApply(client.snapshotIndexes.sources::apply);
+        return withFallback(sources, client, "sources", previous);
+    }
+
+    public static CompletableFuture<Map<Integer, PactlSourceOrSink>> fetchSinks(
+        PactlClient client, Map<Integer, PactlSourceOrSink> previous
+    ) {
+        final var sinks = client.supply(client::listSinks, QUERY_TIMEOUT_MS).thenApply(client.snapshotIndexes.sinks::apply);
+        return withFallback(sinks, client, "sinks", previous);
+    }
+
+    public static CompletableFuture<PactlLinks> fetchLinks(PactlClient client, PactlLinks previous) {
+        final var links = client.supply(() -> client.listModules(LOOPBACK_FILTER), QUERY_TIMEOUT_MS)
+            .thenApply(client.snapshotIndexes.links::apply);
+        return withFallback(links, client, "links", previous);
+    }
+
+    private static Map<Integer, PactlSourceOrSink> indexSourcesOrSinks(
+        List<PactlSourceOrSink> sourcesOrSinks, Map<Integer, PactlSourceOrSink> previous
+    ) {
+        final var result = new LinkedHashMap<Integer, PactlSourceOrSink>(sourcesOrSinks.size() * 4 / 3 + 1);
+        for (final var sourceOrSink : sourcesOrSinks) {
+            final var old = previous.get(sourceOrSink.index());
+            result.put(sourceOrSink.index(), sourceOrSink.equals(old) ? old : sourceOrSink);
+        }
+        return result;
+    }
+
+    private static <T> CompletableFuture<T> withFallback(
+        CompletableFuture<T> query, PactlClient client, String what, T previous
+    ) {
+        return query.exceptionally(e -> {
+            LOGGER.error("Failed to load {} from {}, keeping the last known {}", what, client, what, e);
+            return previous;
+        });
+    }
+
+    public PactlSnapshot withSources(Map<Integer, PactlSourceOrSink> sources) {
+        return new PactlSnapshot(sources, sinks, links);
+    }
+
+    public PactlSnapshot withSinks(Map<Integer, PactlSourceOrSink> sinks) {
+        return new PactlSnapshot(sources, sinks, links);
+    }
+
+    public PactlSnapshot withLinks(PactlLinks links) {
+        return new PactlSnapshot(sources, sinks, links);
+    }
+
+    // Pactl returns the same list instance when a command's output is unchanged, in which case the derived maps are
+    // reused as well. When it has changed, records equal to the previous ones are swapped for them, so that a long
+    // session only retains the records that actually changed. Each client has its own, since the listings of
+    // different servers have nothing to do with each other.
+    static final class Indexes {
+        final Derived<List<PactlSourceOrSink>, Map<Integer, PactlSourceOrSink>> sources =
+            new Derived<>(PactlSnapshot::indexSourcesOrSinks, Map.of());
+        final Derived<List<PactlSourceOrSink>, Map<Integer, PactlSourceOrSink>> sinks =
+            new Derived<>(PactlSnapshot::indexSourcesOrSinks, Map.of());
+        final Derived<List<PactlModule>, PactlLinks> links = new Derived<>(PactlLinks::index, PactlLinks.EMPTY);
+    }
+
+    private static final class Derived<I, O> {
+        // Given the new input and the previous output
+        private final BiFunction<I, O, O> derive;
+        private I input;
+        private O output;
+
+        Derived(BiFunction<I, O, O> derive, O initialOutput) {
+            this.derive = derive;
+            output = initialOutput;
+        }
+
+        synchronized O apply(I newInput) {
+            if (newInput != input) {
+                output = derive.apply(newInput, output);
+                input = newInput;
+            }
+            return output;
+        }
+    }
+}
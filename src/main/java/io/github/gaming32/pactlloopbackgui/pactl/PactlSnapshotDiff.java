@@ -0,0 +1,84 @@
+package io.github.gaming32.pactlloopbackgui.pactl;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+public record PactlSnapshotDiff(Delta<Integer> sources, Delta<Integer> sinks, Delta<Link> links) {
+    public static PactlSnapshotDiff between(PactlSnapshot before, PactlSnapshot after) {
+        return new PactlSnapshotDiff(
+            Delta.between(before.sources(), after.sources()),
+            Delta.between(before.sinks(), after.sinks()),
+            linksBetween(before.links(), after.links())
+        );
+    }
+
+    // Both key arrays are sorted, so this is a single merge over them, without building any intermediate maps
+    private static Delta<Link> linksBetween(PactlLinks before, PactlLinks after) {
+        if (before == after) {
+            return new Delta<>(Set.of(), Set.of(), Set.of());
+        }
+        final var added = new HashSet<Link>();
+        final var removed = new HashSet<Link>();
+        final var changed = new HashSet<Link>();
+        var i = 0;
+        var j = 0;
+        while (i < before.keys.length || j < after.keys.length) {
+            final var beforeKey = i < before.keys.length ? before.keys[i] : Long.MAX_VALUE;
+            final var afterKey = j < after.keys.length ? after.keys[j] : Long.MAX_VALUE;
+            if (beforeKey < afterKey) {
+                removed.add(Link.of(beforeKey));
+                i++;
+            } else if (afterKey < beforeKey) {
+                added.add(Link.of(afterKey));
+                j++;
+            } else {
+                if (!Objects.equals(before.modules[i], after.modules[j])) {
+                    changed.add(Link.of(afterKey));
+                }
+                i++;
+                j++;
+            }
+        }
+        return new Delta<>(added, removed, changed);
+    }
+
+    public boolean isEmpty() {
+        return sources.isEmpty() && sinks.isEmpty() && links.isEmpty();
+    }
+
+    public record Link(int source, int sink) {
+        static Link of(long key) {
+            return new Link(PactlLinks.source(key), PactlLinks.sink(key));
+        }
+    }
+
+    public record Delta<K>(Set<K> added, Set<K> removed, Set<K> changed) {
+        public static <K, V> Delta<K> between(Map<K, V> before, Map<K, V> after) {
+            if (before == after) {
+                return new Delta<>(Set.of(), Set.of(), Set.of());
+            }
+            final var added = new HashSet<K>();
+            final var removed = new HashSet<K>();
+            final var changed = new HashSet<K>();
+            for (final var entry : after.entrySet()) {
+                if (!before.containsKey(entry.getKey())) {
+                    added.add(entry.getKey());
+                } else if (!Objects.equals(before.get(entry.getKey()), entry.getValue())) {
+                    changed.add(entry.getKey());
+                }
+            }
+            for (final var key : before.keySet()) {
+                if (!after.containsKey(key)) {
+                    removed.add(key);
+                }
+            }
+            return new Delta<>(added, removed, changed);
+        }
+
+        public boolean isEmpty() {
+            return added.isEmpty() && removed.isEmpty() && changed.isEmpty();
+        }
+    }
+}
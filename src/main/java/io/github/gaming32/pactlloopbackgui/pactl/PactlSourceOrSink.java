@@ -1,4 +1,9 @@
 package io.github.gaming32.pactlloopbackgui.pactl;
 
-public record PactlSourceOrSink(int index, String description) {
+// name is stable across restarts, unlike index
+public record PactlSourceOrSink(int index, String name, String description) {
+    public PactlSourceOrSink {
+        name = StringPool.intern(name);
+        description = StringPool.intern(description);
+    }
 }
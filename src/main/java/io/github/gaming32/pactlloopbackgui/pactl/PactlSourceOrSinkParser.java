@@ -0,0 +1,83 @@
+package io.github.gaming32.pactlloopbackgui.pactl;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Streams the output of pactl --format json list sources/sinks, skipping over any fields that aren't kept (such as the
+// large properties, ports, formats, and volume objects) without building them.
+final class PactlSourceOrSinkParser {
+    // Every field that can be kept. Adding a field to PactlSourceOrSink only requires adding it here.
+    private static final Map<String, FieldReader> KNOWN_FIELDS = Map.of(
+        "index", (reader, builder) -> builder.index = reader.nextInt(),
+        "name", (reader, builder) -> builder.name = reader.nextString(),
+        "description", (reader, builder) -> builder.description = reader.nextString()
+    );
+
+    static final PactlSourceOrSinkParser DEFAULT = new PactlSourceOrSinkParser(KNOWN_FIELDS.keySet());
+
+    private final Map<String, FieldReader> fields = new LinkedHashMap<>();
+
+    PactlSourceOrSinkParser(Set<String> keptFields) {
+        for (final var field : keptFields) {
+            final var fieldReader = KNOWN_FIELDS.get(field);
+            if (fieldReader == null) {
+                throw new IllegalArgumentException("Unknown source or sink field " + field);
+            }
+            fields.put(field, fieldReader);
+        }
+    }
+
+    List<PactlSourceOrSink> parse(Reader input) throws IOException {
+        final var result = new ArrayList<PactlSourceOrSink>();
+        final var reader = new JsonReader(input);
+        final var builder = new Builder();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            builder.reset();
+            reader.beginObject();
+            while (reader.hasNext()) {
+                final var fieldReader = fields.get(reader.nextName());
+                if (fieldReader == null) {
+                    reader.skipValue();
+                } else if (reader.peek() == JsonToken.NULL) {
+                    reader.nextNull();
+                } else {
+                    fieldReader.read(reader, builder);
+                }
+            }
+            reader.endObject();
+            result.add(builder.build());
+        }
+        reader.endArray();
+        return result;
+    }
+
+    @FunctionalInterface
+    private interface FieldReader {
+        void read(JsonReader reader, Builder builder) throws IOException;
+    }
+
+    private static final class Builder {
+        int index;
+        String name;
+        String description;
+
+        void reset() {
+            index = -1;
+            name = null;
+            description = null;
+        }
+
+        PactlSourceOrSink build() {
+            return new PactlSourceOrSink(index, name, description);
+        }
+    }
+}
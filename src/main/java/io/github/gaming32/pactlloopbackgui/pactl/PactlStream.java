@@ -0,0 +1,9 @@
+package io.github.gaming32.pactlloopbackgui.pactl;
+
+// A sink input or source output. ownerModule is -1 for streams that don't belong to a module, and deviceLatencyUsec is
+// the latency of the sink or source the stream is connected to.
+public record PactlStream(int index, int ownerModule, long bufferLatencyUsec, long deviceLatencyUsec) {
+    public long latencyUsec() {
+        return bufferLatencyUsec + deviceLatencyUsec;
+    }
+}
@@ -0,0 +1,67 @@
+package io.github.gaming32.pactlloopbackgui.pactl;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+// Streams the output of pactl --format json list sink-inputs/source-outputs, keeping only the owner module and
+// latencies, the same way as PactlSourceOrSinkParser
+final class PactlStreamParser {
+    static final PactlStreamParser SINK_INPUTS = new PactlStreamParser("sink_latency_usec");
+    static final PactlStreamParser SOURCE_OUTPUTS = new PactlStreamParser("source_latency_usec");
+
+    private final String deviceLatencyField;
+
+    private PactlStreamParser(String deviceLatencyField) {
+        this.deviceLatencyField = deviceLatencyField;
+    }
+
+    List<PactlStream> parse(Reader input) throws IOException {
+        final var result = new ArrayList<PactlStream>();
+        final var reader = new JsonReader(input);
+        reader.beginArray();
+        while (reader.hasNext()) {
+            var index = -1;
+            var ownerModule = -1;
+            var bufferLatency = 0L;
+            var deviceLatency = 0L;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                final var name = reader.nextName();
+                if (reader.peek() == JsonToken.NULL) {
+                    reader.nextNull();
+                } else if (name.equals("index")) {
+                    index = reader.nextInt();
+                } else if (name.equals("owner_module")) {
+                    ownerModule = readIndex(reader);
+                } else if (name.equals("buffer_latency_usec")) {
+                    bufferLatency = (long) reader.nextDouble();
+                } else if (name.equals(deviceLatencyField)) {
+                    deviceLatency = (long) reader.nextDouble();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            result.add(new PactlStream(index, ownerModule, bufferLatency, deviceLatency));
+        }
+        reader.endArray();
+        return result;
+    }
+
+    // pactl writes missing indices as either an empty string or PA_INVALID_INDEX, which both become -1
+    private static int readIndex(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NUMBER) {
+            return (int) reader.nextLong();
+        }
+        try {
+            return Integer.parseInt(reader.nextString());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
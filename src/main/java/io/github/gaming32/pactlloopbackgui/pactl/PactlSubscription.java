@@ -0,0 +1,61 @@
+package io.github.gaming32.pactlloopbackgui.pactl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.function.Consumer;
+
+public final class PactlSubscription implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PactlSubscription.class);
+
+    private final Process process;
+    private final Consumer<PactlEvent> listener;
+    private final Runnable onEnd;
+    private volatile boolean closed;
+
+    PactlSubscription(Process process, Consumer<PactlEvent> listener, Runnable onEnd) {
+        this.process = process;
+        this.listener = listener;
+        this.onEnd = onEnd;
+
+        final var thread = new Thread(this::run, "pactl-subscribe");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void run() {
+        try (var reader = new BufferedReader(process.inputReader())) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final var event = PactlEvent.parse(line);
+                if (event != null) {
+                    listener.accept(event);
+                } else {
+                    LOGGER.debug("Ignoring unrecognized subscribe line: {}", line);
+                }
+            }
+        } catch (IOException e) {
+            if (!closed) {
+                LOGGER.error("Failed to read pactl subscribe output", e);
+            }
+        }
+        process.destroy();
+        if (!closed) {
+            LOGGER.warn("pactl subscribe exited unexpectedly");
+            onEnd.run();
+        }
+    }
+
+    public boolean isAlive() {
+        return !closed && process.isAlive();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        process.destroy();
+    }
+}
@@ -0,0 +1,162 @@
+package io.github.gaming32.pactlloopbackgui.pactl;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+// An immutable view of module arguments parsed by PactlArguments.parse. Keys and values are stored as offset ranges
+// over the original string, and are only turned into Strings when they're looked up. It stays read-only because the
+// same instances are handed out again by every listing that finds the modules unchanged. Copy it into a LinkedHashMap
+// to edit it.
+public final class ParsedArguments extends AbstractMap<String, String> {
+    // keyStart, keyEnd, valueStart, valueEnd for each entry
+    private static final int STRIDE = 4;
+
+    private final String source;
+    private int[] ranges;
+    private int size;
+    private Set<Entry<String, String>> entrySet;
+
+    ParsedArguments(String source) {
+        this.source = source;
+        ranges = new int[STRIDE * 4];
+    }
+
+    void add(int keyStart, int keyEnd, int valueStart, int valueEnd) throws IllegalArgumentException {
+        if (indexOf(source, keyStart, keyEnd - keyStart) != -1) {
+            throw new IllegalArgumentException("Duplicate key at position " + keyStart);
+        }
+        final var offset = size * STRIDE;
+        if (offset == ranges.length) {
+            ranges = Arrays.copyOf(ranges, ranges.length * 2);
+        }
+        ranges[offset] = keyStart;
+        ranges[offset + 1] = keyEnd;
+        ranges[offset + 2] = valueStart;
+        ranges[offset + 3] = valueEnd;
+        size++;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof String k && indexOf(k, 0, k.length()) != -1;
+    }
+
+    @Override
+    public String get(Object key) {
+        if (!(key instanceof String k)) {
+            return null;
+        }
+        final var index = indexOf(k, 0, k.length());
+        return index != -1 ? value(index) : null;
+    }
+
+    // Parses the value of key as an int without materializing it
+    @Nullable
+    public Integer getInt(String key) {
+        final var index = indexOf(key, 0, key.length());
+        if (index == -1) {
+            return null;
+        }
+        final var offset = index * STRIDE;
+        try {
+            return Integer.parseInt(source, ranges[offset + 2], ranges[offset + 3], 10);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private String key(int index) {
+        final var offset = index * STRIDE;
+        return StringPool.intern(source, ranges[offset], ranges[offset + 1]);
+    }
+
+    private String value(int index) {
+        final var offset = index * STRIDE;
+        return StringPool.intern(source, ranges[offset + 2], ranges[offset + 3]);
+    }
+
+    // Arguments of the same module usually come back in the same order, in which case the ranges can be compared
+    // directly, without materializing any entries
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+        if (o instanceof ParsedArguments other && other.size == size && rangesMatch(other)) {
+            return true;
+        }
+        return super.equals(o);
+    }
+
+    private boolean rangesMatch(ParsedArguments other) {
+        for (var i = 0; i < size * STRIDE; i += 2) {
+            final var length = ranges[i + 1] - ranges[i];
+            if (other.ranges[i + 1] - other.ranges[i] != length ||
+                !source.regionMatches(ranges[i], other.source, other.ranges[i], length)
+            ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int indexOf(String key, int keyStart, int keyLength) {
+        for (var i = 0; i < size; i++) {
+            final var offset = i * STRIDE;
+            if (ranges[offset + 1] - ranges[offset] == keyLength &&
+                source.regionMatches(ranges[offset], key, keyStart, keyLength)
+            ) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @NotNull
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new AbstractSet<>() {
+                @NotNull
+                @Override
+                public Iterator<Entry<String, String>> iterator() {
+                    return new Iterator<>() {
+                        private int next;
+
+                        @Override
+                        public boolean hasNext() {
+                            return next < size;
+                        }
+
+                        @Override
+                        public Entry<String, String> next() {
+                            if (next >= size) {
+                                throw new NoSuchElementException();
+                            }
+                            final var index = next++;
+                            return new SimpleImmutableEntry<>(key(index), value(index));
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+        return entrySet;
+    }
+}
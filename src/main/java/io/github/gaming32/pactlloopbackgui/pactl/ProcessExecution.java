@@ -0,0 +1,187 @@
+package io.github.gaming32.pactlloopbackgui.pactl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// A running process. Its stderr is drained on a separate thread, so that a chatty stderr can't fill its pipe while
+// stdout is being read, and it's killed along with its descendants if it runs past its timeout.
+final class ProcessExecution {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProcessExecution.class);
+
+    static final long TIMEOUT_MS = Long.getLong("pactl.processTimeout", 10_000);
+    static final int STDOUT_LIMIT = 64 * 1024 * 1024;
+    private static final int STDERR_LIMIT = 64 * 1024;
+
+    private static final AtomicInteger THREAD_ID = new AtomicInteger();
+    private static final ExecutorService STDERR_DRAINER = Executors.newCachedThreadPool(task -> {
+        final var thread = new Thread(task, "pactl-stderr-" + THREAD_ID.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final ScheduledExecutorService WATCHDOG = Executors.newSingleThreadScheduledExecutor(task -> {
+        final var thread = new Thread(task, "pactl-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final String command;
+    private final Process process;
+    private final CommandMetrics metrics;
+    private final long startTime;
+    private final MeteredInputStream stdout;
+    private final Future<String> stderr;
+    private final ScheduledFuture<?> watchdog;
+    // Kills the process if the query it's running for times out first
+    private final Cancellation.Registration cancellation;
+    private volatile boolean timedOut;
+
+    private ProcessExecution(String command, Process process, CommandMetrics metrics, long startTime) {
+        this.command = command;
+        this.process = process;
+        this.metrics = metrics;
+        this.startTime = startTime;
+        stdout = new MeteredInputStream(process.getInputStream());
+        stderr = STDERR_DRAINER.submit(() -> drain(process.getErrorStream()));
+        watchdog = killAfter(process, TIMEOUT_MS, () -> timedOut = true);
+        cancellation = Cancellation.onCancel(() -> {
+            timedOut = true;
+            killTree(process);
+        });
+    }
+
+    static ProcessExecution start(CommandMetrics metrics, String... command) throws IOException {
+        final var startTime = System.nanoTime();
+        final var process = new ProcessBuilder(command).start();
+        metrics.spawn().recordSince(startTime);
+        return new ProcessExecution(String.join(" ", command), process, metrics, startTime);
+    }
+
+    InputStream stdout() {
+        return stdout;
+    }
+
+    // Reads the rest of stdout, up to STDOUT_LIMIT bytes
+    static byte[] readAll(InputStream input) throws IOException {
+        final var output = input.readNBytes(STDOUT_LIMIT + 1);
+        if (output.length > STDOUT_LIMIT) {
+            throw new IOException("Output is longer than " + STDOUT_LIMIT + " bytes");
+        }
+        return output;
+    }
+
+    // Waits for the process to exit. Throws if it didn't exit successfully.
+    PactlProcessResult finish() throws IOException {
+        final int exitCode;
+        final String stderrText;
+        try {
+            exitCode = process.waitFor();
+            stderrText = stderr.get();
+        } catch (InterruptedException e) {
+            kill();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for " + command);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to read stderr of " + command, e.getCause());
+        } finally {
+            watchdog.cancel(false);
+            cancellation.close();
+            metrics.bytes().record(stdout.bytesRead);
+        }
+        final var result = new PactlProcessResult(exitCode, stderrText, Duration.ofNanos(System.nanoTime() - startTime));
+        if (timedOut || exitCode != 0) {
+            throw new PactlProcessException(command, result, timedOut);
+        }
+        return result;
+    }
+
+    // Kills the process without checking how it exited
+    void kill() {
+        watchdog.cancel(false);
+        cancellation.close();
+        metrics.bytes().record(stdout.bytesRead);
+        killTree(process);
+    }
+
+    // Kills process and its descendants after timeoutMs, first running onTimeout. Cancel the result once the process
+    // is done with.
+    static ScheduledFuture<?> killAfter(Process process, long timeoutMs, Runnable onTimeout) {
+        return WATCHDOG.schedule(() -> {
+            LOGGER.warn("Killing process {} after {}ms", process.pid(), timeoutMs);
+            onTimeout.run();
+            killTree(process);
+        }, timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    // Descendants are killed first, as they'd otherwise be reparented and keep the output pipes open
+    static void killTree(Process process) {
+        process.descendants().forEach(ProcessHandle::destroyForcibly);
+        process.destroyForcibly();
+    }
+
+    // Keeps the first STDERR_LIMIT bytes, and discards the rest
+    private static String drain(InputStream input) throws IOException {
+        try (input) {
+            final var output = new ByteArrayOutputStream();
+            final var buffer = new byte[8192];
+            var truncated = false;
+            int n;
+            while ((n = input.read(buffer)) != -1) {
+                final var kept = Math.min(n, STDERR_LIMIT - output.size());
+                output.write(buffer, 0, kept);
+                truncated |= kept < n;
+            }
+            final var text = output.toString(StandardCharsets.UTF_8).strip();
+            return truncated ? text + "\n(stderr truncated)" : text;
+        }
+    }
+
+    // Counts the bytes read, and records the time to the first one
+    private final class MeteredInputStream extends FilterInputStream {
+        private long bytesRead;
+
+        MeteredInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            final var b = super.read();
+            if (b != -1) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            final var n = super.read(b, off, len);
+            if (n > 0) {
+                count(n);
+            }
+            return n;
+        }
+
+        private void count(int n) {
+            if (bytesRead == 0) {
+                metrics.firstByte().recordSince(startTime);
+            }
+            bytesRead += n;
+        }
+    }
+}
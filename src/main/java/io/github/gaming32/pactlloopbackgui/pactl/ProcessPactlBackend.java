@@ -0,0 +1,281 @@
+package io.github.gaming32.pactlloopbackgui.pactl;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+
+final class ProcessPactlBackend implements PactlBackend {
+    // Lets pactl be swapped for a stand-in, such as the one the load test uses
+    private static final String EXECUTABLE = System.getProperty("pactl.executable", "pactl");
+    private static final boolean USE_SESSION = Boolean.parseBoolean(System.getProperty("pactl.commandSession", "true"));
+
+    @Nullable
+    private final String[] commandWrapper;
+    // Runs every command through one long-lived wrapper, rather than starting the wrapper for each command
+    @Nullable
+    private final CommandSession session;
+    // --server=<server> when there is one, placed before every command
+    private final String[] serverOptions;
+
+    private final OutputCache<List<PactlSourceOrSink>> sourcesCache = new OutputCache<>();
+    private final OutputCache<List<PactlSourceOrSink>> sinksCache = new OutputCache<>();
+    private final OutputCache<List<PactlModule>> modulesCache = new OutputCache<>();
+
+    ProcessPactlBackend(@Nullable String server, @Nullable String commandWrapper) {
+        this.commandWrapper = commandWrapper != null ? commandWrapper.split(" ") : null;
+        session = this.commandWrapper != null && USE_SESSION ? new CommandSession(this.commandWrapper) : null;
+        serverOptions = server != null ? new String[] {"--server=" + server} : new String[0];
+    }
+
+    @Override
+    public List<PactlSourceOrSink> listSources() throws IOException {
+        return listSourcesOrSinks("sources");
+    }
+
+    @Override
+    public List<PactlSourceOrSink> listSinks() throws IOException {
+        return listSourcesOrSinks("sinks");
+    }
+
+    private List<PactlSourceOrSink> listSourcesOrSinks(String what) throws IOException {
+        final var cache = what.equals("sources") ? sourcesCache : sinksCache;
+        final var metrics = what.equals("sources") ? CommandMetrics.LIST_SOURCES : CommandMetrics.LIST_SINKS;
+        final var output = runProcessChecksummed(metrics, "--format", "json", "list", what);
+        return cache.get(output.checksum, output.bytes.length, null, () -> metrics.timeParse(() ->
+            List.copyOf(PactlSourceOrSinkParser.DEFAULT.parse(output.reader()))
+        ));
+    }
+
+    @Override
+    public List<PactlModule> listModules(Predicate<String> nameFilter) throws IOException {
+        // The filter is part of the key, so callers should reuse the same filter instance to benefit from the cache
+        final var metrics = CommandMetrics.LIST_MODULES;
+        final var output = runProcessChecksummed(metrics, "list", "short", "modules");
+        return modulesCache.get(output.checksum, output.bytes.length, nameFilter, () -> metrics.timeParse(() -> {
+            final var result = new ArrayList<PactlModule>();
+            visitModules(output.reader(), nameFilter, result::add);
+            return List.copyOf(result);
+        }));
+    }
+
+    @Override
+    public void visitModules(Predicate<String> nameFilter, Predicate<PactlModule> visitor) throws IOException {
+        try (var reader = runProcess(CommandMetrics.LIST_MODULES, "list", "short", "modules")) {
+            if (!visitModules(reader, nameFilter, visitor)) {
+                // The rest of the output is unwanted, so don't wait for pactl to finish writing it
+                reader.abandon();
+            }
+        }
+    }
+
+    static List<PactlModule> parseModules(BufferedReader reader) throws IOException {
+        final var result = new ArrayList<PactlModule>();
+        visitModules(reader, name -> true, result::add);
+        return result;
+    }
+
+    // Parses the output of pactl list short modules. Returns false if the visitor stopped early.
+    static boolean visitModules(
+        BufferedReader reader, Predicate<String> nameFilter, Predicate<PactlModule> visitor
+    ) throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            // index \t name \t arguments \t, where the arguments may be the start of a multi-line SPA block
+            final var nameStart = line.indexOf('\t') + 1;
+            final var argumentsStart = line.indexOf('\t', nameStart) + 1;
+            if (nameStart == 0 || argumentsStart == 0) {
+                throw new IOException("Malformed module line: " + line);
+            }
+            var argumentsEnd = line.indexOf('\t', argumentsStart);
+            if (argumentsEnd == -1) {
+                argumentsEnd = line.length();
+            }
+            final Map<String, String> arguments;
+            if (argumentsEnd == line.length() && argumentsEnd - argumentsStart == 1 && line.charAt(argumentsStart) == '{') {
+                // PipeWire SPA json configuration is not supported, and is treated as no configuration
+                arguments = Map.of();
+                skipSpaBlock(reader);
+            } else {
+                arguments = null;
+            }
+            final var name = StringPool.intern(line, nameStart, argumentsStart - 1);
+            if (!nameFilter.test(name)) continue;
+            final var module = new PactlModule(
+                Integer.parseInt(line, 0, nameStart - 1, 10),
+                name,
+                arguments != null ? arguments : PactlArguments.parse(line, argumentsStart, argumentsEnd)
+            );
+            if (!visitor.test(module)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void skipSpaBlock(BufferedReader reader) throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (isClosingBrace(line)) return;
+        }
+        throw new IOException("Unterminated SPA configuration");
+    }
+
+    // Equivalent to line.trim().equals("}"), without creating the trimmed string
+    private static boolean isClosingBrace(String line) {
+        var start = 0;
+        var end = line.length();
+        while (start < end && line.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && line.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return end - start == 1 && line.charAt(start) == '}';
+    }
+
+    @Override
+    public List<PactlStream> listSinkInputs() throws IOException {
+        return listStreams(CommandMetrics.LIST_SINK_INPUTS, "sink-inputs", PactlStreamParser.SINK_INPUTS);
+    }
+
+    @Override
+    public List<PactlStream> listSourceOutputs() throws IOException {
+        return listStreams(CommandMetrics.LIST_SOURCE_OUTPUTS, "source-outputs", PactlStreamParser.SOURCE_OUTPUTS);
+    }
+
+    // Latencies change constantly, so these aren't cached
+    private List<PactlStream> listStreams(
+        CommandMetrics metrics, String what, PactlStreamParser parser
+    ) throws IOException {
+        final var output = runProcessChecksummed(metrics, "--format", "json", "list", what);
+        return metrics.timeParse(() -> parser.parse(output.reader()));
+    }
+
+    @Override
+    public int loadModule(String name, Map<String, String> arguments) throws IOException {
+        try (var reader = runProcess(CommandMetrics.LOAD_MODULE, "load-module", name, PactlArguments.toString(arguments))) {
+            return Integer.parseInt(reader.readLine().trim());
+        }
+    }
+
+    @Override
+    public void unloadModule(int index) throws IOException {
+        runProcess(CommandMetrics.UNLOAD_MODULE, "unload-module", Integer.toString(index)).close();
+    }
+
+    String[] buildCommand(String... command) {
+        return buildToolCommand(EXECUTABLE, command);
+    }
+
+    // Any of the tools that take --server the same way pactl does, such as parec
+    String[] buildToolCommand(String executable, String... command) {
+        final var toolCommand = toolCommand(executable, command);
+        if (commandWrapper == null) {
+            return toolCommand;
+        }
+        final var fullCommand = Arrays.copyOf(commandWrapper, commandWrapper.length + 1);
+        fullCommand[commandWrapper.length] = String.join(" ", toolCommand);
+        return fullCommand;
+    }
+
+    private String[] pactlCommand(String... command) {
+        return toolCommand(EXECUTABLE, command);
+    }
+
+    private String[] toolCommand(String executable, String... command) {
+        final var result = new String[1 + serverOptions.length + command.length];
+        result[0] = executable;
+        System.arraycopy(serverOptions, 0, result, 1, serverOptions.length);
+        System.arraycopy(command, 0, result, 1 + serverOptions.length, command.length);
+        return result;
+    }
+
+    private ProcessReader runProcess(CommandMetrics metrics, String... command) throws IOException {
+        if (session != null) {
+            return new ProcessReader(reader(runInSession(metrics, command)), null);
+        }
+        final var execution = ProcessExecution.start(metrics, buildCommand(command));
+        return new ProcessReader(new InputStreamReader(execution.stdout(), StandardCharsets.UTF_8), execution);
+    }
+
+    // Reads all of stdout, checksumming it as it's read
+    private ChecksummedOutput runProcessChecksummed(
+        CommandMetrics metrics, String... command
+    ) throws IOException {
+        if (session != null) {
+            final var output = runInSession(metrics, command);
+            final var checksum = new CRC32C();
+            checksum.update(output);
+            return new ChecksummedOutput(output, checksum.getValue());
+        }
+        final var execution = ProcessExecution.start(metrics, buildCommand(command));
+        final var checksum = new CRC32C();
+        final byte[] output;
+        try (var input = new CheckedInputStream(execution.stdout(), checksum)) {
+            output = ProcessExecution.readAll(input);
+        } catch (IOException e) {
+            execution.kill();
+            throw e;
+        }
+        execution.finish();
+        return new ChecksummedOutput(output, checksum.getValue());
+    }
+
+    private byte[] runInSession(CommandMetrics metrics, String... command) throws IOException {
+        final var fullCommand = pactlCommand(command);
+        final var output = session.run(metrics, fullCommand);
+        if (output.result().exitCode() != 0) {
+            throw new PactlProcessException(String.join(" ", fullCommand), output.result(), false);
+        }
+        return output.stdout();
+    }
+
+    private static BufferedReader reader(byte[] bytes) {
+        return new BufferedReader(new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8));
+    }
+
+    private record ChecksummedOutput(byte[] bytes, long checksum) {
+        BufferedReader reader() {
+            return ProcessPactlBackend.reader(bytes);
+        }
+    }
+
+    // execution is null for output that has already been read in full, and had its exit status checked
+    private static final class ProcessReader extends BufferedReader {
+        @Nullable
+        private final ProcessExecution execution;
+        private boolean abandoned;
+
+        ProcessReader(Reader in, @Nullable ProcessExecution execution) {
+            super(in);
+            this.execution = execution;
+        }
+
+        // Kills the process, and skips checking its exit status on close
+        void abandon() {
+            abandoned = true;
+            if (execution != null) {
+                execution.kill();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            super.close();
+            if (abandoned || execution == null) return;
+            execution.finish();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package io.github.gaming32.pactlloopbackgui.pactl;
+
+import org.jetbrains.annotations.Nullable;
+
+// Canonicalizes the names, descriptions, and argument keys and values that come back on every refresh, so that the
+// retained model shares one copy of each. Direct mapped and fixed size, so it stays bounded no matter how many distinct
+// strings pass through: a colliding string just replaces the slot's previous one. Races between threads can only cost
+// a miss, since Strings are safely published.
+public final class StringPool {
+    private static final int SIZE = Integer.highestOneBit(Math.max(Integer.getInteger("pactl.stringPoolSize", 4096), 1));
+    private static final String[] SLOTS = new String[SIZE];
+
+    private StringPool() {
+    }
+
+    @Nullable
+    public static String intern(@Nullable String value) {
+        if (value == null) {
+            return null;
+        }
+        final var slot = slot(value.hashCode());
+        final var existing = SLOTS[slot];
+        if (value.equals(existing)) {
+            return existing;
+        }
+        SLOTS[slot] = value;
+        return value;
+    }
+
+    // Equivalent to intern(source.substring(start, end)), but only creates the substring on a miss
+    public static String intern(String source, int start, int end) {
+        var hash = 0;
+        for (var i = start; i < end; i++) {
+            hash = 31 * hash + source.charAt(i);
+        }
+        final var slot = slot(hash);
+        final var existing = SLOTS[slot];
+        final var length = end - start;
+        if (existing != null && existing.length() == length && existing.regionMatches(0, source, start, length)) {
+            return existing;
+        }
+        final var value = source.substring(start, end);
+        SLOTS[slot] = value;
+        return value;
+    }
+
+    private static int slot(int hash) {
+        return (hash ^ (hash >>> 16)) & (SIZE - 1);
+    }
+}
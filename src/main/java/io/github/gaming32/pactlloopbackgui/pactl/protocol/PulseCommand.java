@@ -0,0 +1,19 @@
+package io.github.gaming32.pactlloopbackgui.pactl.protocol;
+
+// Values of pa_command from pulsecore/native-common.h
+public final class PulseCommand {
+    public static final int ERROR = 0;
+    public static final int REPLY = 2;
+    public static final int AUTH = 8;
+    public static final int SET_CLIENT_NAME = 9;
+    public static final int GET_SINK_INFO_LIST = 22;
+    public static final int GET_SOURCE_INFO_LIST = 24;
+    public static final int GET_MODULE_INFO_LIST = 26;
+    public static final int GET_SINK_INPUT_INFO_LIST = 30;
+    public static final int GET_SOURCE_OUTPUT_INFO_LIST = 32;
+    public static final int LOAD_MODULE = 51;
+    public static final int UNLOAD_MODULE = 52;
+
+    private PulseCommand() {
+    }
+}
@@ -0,0 +1,151 @@
+package io.github.gaming32.pactlloopbackgui.pactl.protocol;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.function.Consumer;
+
+// A client connection speaking the PulseAudio native protocol. Only control packets are supported.
+public final class PulseConnection implements Closeable {
+    public static final int PROTOCOL_VERSION = 32;
+    public static final int COOKIE_LENGTH = 256;
+
+    static final int DESCRIPTOR_SIZE = 20;
+    static final int CONTROL_CHANNEL = -1;
+    static final int MAX_FRAME_SIZE = 16 * 1024 * 1024;
+
+    private static final String[] ERRORS = {
+        "OK", "Access denied", "Unknown command", "Invalid argument", "Entity exists", "No such entity",
+        "Connection refused", "Protocol error", "Timeout", "No authentication key", "Internal error",
+        "Connection terminated", "Entity killed", "Invalid server", "Module initialization failed", "Bad state",
+        "No data", "Incompatible protocol version", "Too large", "Not supported", "Unknown error code",
+        "No such extension", "Obsolete functionality", "Missing implementation", "Client forked",
+        "Input/Output error", "Device or resource busy"
+    };
+
+    private final SocketChannel channel;
+    private final ByteBuffer descriptor = ByteBuffer.allocate(DESCRIPTOR_SIZE);
+    private int nextTag;
+    private int version;
+
+    private PulseConnection(SocketChannel channel) {
+        this.channel = channel;
+    }
+
+    public static PulseConnection connect(Path socket, byte[] cookie, String clientName) throws IOException {
+        final var channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+        final var connection = new PulseConnection(channel);
+        try {
+            channel.connect(UnixDomainSocketAddress.of(socket));
+            final var authReply = connection.request(PulseCommand.AUTH, args -> args
+                .putU32(PROTOCOL_VERSION)
+                .putArbitrary(cookie)
+            );
+            // The upper bits are shm and memfd flags, which we never request
+            connection.version = Math.min(authReply.getU32() & 0xffff, PROTOCOL_VERSION);
+            connection.request(PulseCommand.SET_CLIENT_NAME, args -> args
+                .putProplist(Map.of("application.name", clientName))
+            );
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        return connection;
+    }
+
+    public static byte[] readCookie(@Nullable Path cookieFile) throws IOException {
+        if (cookieFile == null || !Files.isRegularFile(cookieFile)) {
+            // Servers that authenticate by credentials or don't authenticate at all (such as pipewire-pulse) accept
+            // any cookie
+            return new byte[COOKIE_LENGTH];
+        }
+        final var cookie = Files.readAllBytes(cookieFile);
+        if (cookie.length != COOKIE_LENGTH) {
+            throw new IOException("Invalid PulseAudio cookie length " + cookie.length + " in " + cookieFile);
+        }
+        return cookie;
+    }
+
+    public int version() {
+        return version;
+    }
+
+    public synchronized TagStructReader request(int command, Consumer<TagStructWriter> arguments) throws IOException {
+        final var tag = nextTag++;
+        final var packet = new TagStructWriter().putU32(command).putU32(tag);
+        arguments.accept(packet);
+        writePacket(channel, descriptor, packet.toBuffer());
+
+        while (true) {
+            final var reply = readPacket(channel, descriptor);
+            if (reply == null) continue;
+            final var replyCommand = reply.getU32();
+            final var replyTag = reply.getU32();
+            if (replyTag != tag) {
+                // Unsolicited packets, such as events, are ignored
+                continue;
+            }
+            if (replyCommand == PulseCommand.ERROR) {
+                throw new PulseException(command, reply.getU32());
+            }
+            if (replyCommand != PulseCommand.REPLY) {
+                throw new IOException("Unexpected reply command " + replyCommand);
+            }
+            return reply;
+        }
+    }
+
+    static String errorString(int code) {
+        return code >= 0 && code < ERRORS.length ? ERRORS[code] : "Unknown error " + code;
+    }
+
+    public static void writePacket(SocketChannel channel, ByteBuffer descriptor, ByteBuffer payload) throws IOException {
+        descriptor.clear()
+            .putInt(payload.remaining())
+            .putInt(CONTROL_CHANNEL)
+            .putInt(0)
+            .putInt(0)
+            .putInt(0)
+            .flip();
+        final var buffers = new ByteBuffer[] {descriptor, payload};
+        while (descriptor.hasRemaining() || payload.hasRemaining()) {
+            channel.write(buffers);
+        }
+    }
+
+    // Returns null for non-control packets, whose payload is skipped
+    @Nullable
+    public static TagStructReader readPacket(SocketChannel channel, ByteBuffer descriptor) throws IOException {
+        readFully(channel, descriptor.clear());
+        final var length = descriptor.getInt(0);
+        final var packetChannel = descriptor.getInt(4);
+        if (length < 0 || length > MAX_FRAME_SIZE) {
+            throw new IOException("Invalid frame size " + Integer.toUnsignedString(length));
+        }
+        final var payload = ByteBuffer.allocate(length);
+        readFully(channel, payload);
+        return packetChannel == CONTROL_CHANNEL ? new TagStructReader(payload.flip()) : null;
+    }
+
+    private static void readFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) == -1) {
+                throw new EOFException("Connection closed by server");
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
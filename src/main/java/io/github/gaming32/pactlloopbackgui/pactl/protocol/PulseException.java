@@ -0,0 +1,23 @@
+package io.github.gaming32.pactlloopbackgui.pactl.protocol;
+
+import java.io.IOException;
+
+// An error reply from the server. The connection is still usable after one of these.
+public class PulseException extends IOException {
+    private final int command;
+    private final int code;
+
+    public PulseException(int command, int code) {
+        super("PulseAudio command " + command + " failed: " + PulseConnection.errorString(code));
+        this.command = command;
+        this.code = code;
+    }
+
+    public int getCommand() {
+        return command;
+    }
+
+    public int getCode() {
+        return code;
+    }
+}
@@ -0,0 +1,160 @@
+package io.github.gaming32.pactlloopbackgui.pactl.protocol;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Based on pulsecore/tagstruct.c
+public final class TagStructReader {
+    static final byte TAG_STRING = 't';
+    static final byte TAG_STRING_NULL = 'N';
+    static final byte TAG_U32 = 'L';
+    static final byte TAG_U8 = 'B';
+    static final byte TAG_U64 = 'R';
+    static final byte TAG_S64 = 'r';
+    static final byte TAG_SAMPLE_SPEC = 'a';
+    static final byte TAG_ARBITRARY = 'x';
+    static final byte TAG_BOOLEAN_TRUE = '1';
+    static final byte TAG_BOOLEAN_FALSE = '0';
+    static final byte TAG_TIMEVAL = 'T';
+    static final byte TAG_USEC = 'U';
+    static final byte TAG_CHANNEL_MAP = 'm';
+    static final byte TAG_CVOLUME = 'v';
+    static final byte TAG_PROPLIST = 'P';
+    static final byte TAG_VOLUME = 'V';
+    static final byte TAG_FORMAT_INFO = 'f';
+
+    private final ByteBuffer buffer;
+
+    public TagStructReader(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    public boolean hasRemaining() {
+        return buffer.hasRemaining();
+    }
+
+    public int getU32() throws IOException {
+        expect(TAG_U32);
+        return getRaw(4).getInt();
+    }
+
+    public int getU8() throws IOException {
+        expect(TAG_U8);
+        return Byte.toUnsignedInt(getRaw(1).get());
+    }
+
+    public long getUsec() throws IOException {
+        expect(TAG_USEC);
+        return getRaw(8).getLong();
+    }
+
+    public boolean getBoolean() throws IOException {
+        final var tag = getTag();
+        return switch (tag) {
+            case TAG_BOOLEAN_TRUE -> true;
+            case TAG_BOOLEAN_FALSE -> false;
+            default -> throw unexpectedTag(tag);
+        };
+    }
+
+    @Nullable
+    public String getString() throws IOException {
+        final var tag = getTag();
+        return switch (tag) {
+            case TAG_STRING_NULL -> null;
+            case TAG_STRING -> getRawString();
+            default -> throw unexpectedTag(tag);
+        };
+    }
+
+    public byte[] getArbitrary() throws IOException {
+        expect(TAG_ARBITRARY);
+        final var result = new byte[getRaw(4).getInt()];
+        getRaw(result.length).get(result);
+        return result;
+    }
+
+    public Map<String, String> getProplist() throws IOException {
+        expect(TAG_PROPLIST);
+        final var result = new LinkedHashMap<String, String>();
+        String key;
+        while ((key = getString()) != null) {
+            getU32();
+            final var value = getArbitrary();
+            // Strip the NUL terminator that string properties are stored with
+            final var end = value.length > 0 && value[value.length - 1] == 0 ? value.length - 1 : value.length;
+            result.put(key, new String(value, 0, end, StandardCharsets.UTF_8));
+        }
+        return result;
+    }
+
+    public void skip(int count) throws IOException {
+        for (var i = 0; i < count; i++) {
+            skip();
+        }
+    }
+
+    public void skip() throws IOException {
+        final var tag = getTag();
+        switch (tag) {
+            case TAG_STRING -> getRawString();
+            case TAG_STRING_NULL, TAG_BOOLEAN_TRUE, TAG_BOOLEAN_FALSE -> {
+            }
+            case TAG_U8 -> getRaw(1);
+            case TAG_U32, TAG_VOLUME -> getRaw(4);
+            case TAG_U64, TAG_S64, TAG_USEC, TAG_TIMEVAL -> getRaw(8);
+            case TAG_SAMPLE_SPEC -> getRaw(6);
+            case TAG_ARBITRARY -> getRaw(getRaw(4).getInt());
+            case TAG_CHANNEL_MAP -> getRaw(Byte.toUnsignedInt(getRaw(1).get()));
+            case TAG_CVOLUME -> getRaw(Byte.toUnsignedInt(getRaw(1).get()) * 4);
+            case TAG_PROPLIST -> {
+                while (getString() != null) {
+                    skip(2);
+                }
+            }
+            case TAG_FORMAT_INFO -> skip(2);
+            default -> throw unexpectedTag(tag);
+        }
+    }
+
+    private void expect(byte expected) throws IOException {
+        final var tag = getTag();
+        if (tag != expected) {
+            throw unexpectedTag(tag);
+        }
+    }
+
+    private byte getTag() throws IOException {
+        return getRaw(1).get();
+    }
+
+    private String getRawString() throws IOException {
+        final var start = buffer.position();
+        for (var i = start; i < buffer.limit(); i++) {
+            if (buffer.get(i) == 0) {
+                final var bytes = new byte[i - start];
+                buffer.get(bytes).get();
+                return new String(bytes, StandardCharsets.UTF_8);
+            }
+        }
+        throw new IOException("Unterminated string in tagstruct");
+    }
+
+    private ByteBuffer getRaw(int length) throws IOException {
+        if (length < 0 || buffer.remaining() < length) {
+            throw new IOException("Unexpected end of tagstruct");
+        }
+        final var result = buffer.slice(buffer.position(), length);
+        buffer.position(buffer.position() + length);
+        return result;
+    }
+
+    private IOException unexpectedTag(byte tag) {
+        return new IOException("Unexpected tag '" + (char) tag + "' at position " + (buffer.position() - 1));
+    }
+}
@@ -0,0 +1,116 @@
+package io.github.gaming32.pactlloopbackgui.pactl.protocol;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+// Based on pulsecore/tagstruct.c
+public final class TagStructWriter {
+    private byte[] data = new byte[64];
+    private int length;
+
+    public TagStructWriter putU32(int value) {
+        ensure(5);
+        data[length++] = TagStructReader.TAG_U32;
+        putRawU32(value);
+        return this;
+    }
+
+    public TagStructWriter putU8(int value) {
+        ensure(2);
+        data[length++] = TagStructReader.TAG_U8;
+        data[length++] = (byte) value;
+        return this;
+    }
+
+    public TagStructWriter putU64(byte tag, long value) {
+        ensure(9);
+        data[length++] = tag;
+        putRawU32((int) (value >>> 32));
+        putRawU32((int) value);
+        return this;
+    }
+
+    public TagStructWriter putUsec(long value) {
+        return putU64(TagStructReader.TAG_USEC, value);
+    }
+
+    public TagStructWriter putVolume(int value) {
+        ensure(5);
+        data[length++] = TagStructReader.TAG_VOLUME;
+        putRawU32(value);
+        return this;
+    }
+
+    public TagStructWriter putBoolean(boolean value) {
+        ensure(1);
+        data[length++] = value ? TagStructReader.TAG_BOOLEAN_TRUE : TagStructReader.TAG_BOOLEAN_FALSE;
+        return this;
+    }
+
+    public TagStructWriter putString(@Nullable String value) {
+        if (value == null) {
+            ensure(1);
+            data[length++] = TagStructReader.TAG_STRING_NULL;
+            return this;
+        }
+        final var bytes = value.getBytes(StandardCharsets.UTF_8);
+        ensure(bytes.length + 2);
+        data[length++] = TagStructReader.TAG_STRING;
+        System.arraycopy(bytes, 0, data, length, bytes.length);
+        length += bytes.length;
+        data[length++] = 0;
+        return this;
+    }
+
+    public TagStructWriter putArbitrary(byte[] value) {
+        ensure(value.length + 5);
+        data[length++] = TagStructReader.TAG_ARBITRARY;
+        putRawU32(value.length);
+        System.arraycopy(value, 0, data, length, value.length);
+        length += value.length;
+        return this;
+    }
+
+    public TagStructWriter putProplist(Map<String, String> properties) {
+        ensure(1);
+        data[length++] = TagStructReader.TAG_PROPLIST;
+        for (final var entry : properties.entrySet()) {
+            // Proplist values are NUL terminated strings stored as arbitrary data
+            final var bytes = entry.getValue().getBytes(StandardCharsets.UTF_8);
+            final var value = Arrays.copyOf(bytes, bytes.length + 1);
+            putString(entry.getKey());
+            putU32(value.length);
+            putArbitrary(value);
+        }
+        return putString(null);
+    }
+
+    // Appends bytes as they are, for writing the tags that only a server sends
+    TagStructWriter putRaw(byte[] bytes) {
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, data, length, bytes.length);
+        length += bytes.length;
+        return this;
+    }
+
+    public ByteBuffer toBuffer() {
+        return ByteBuffer.wrap(data, 0, length);
+    }
+
+    private void putRawU32(int value) {
+        data[length++] = (byte) (value >>> 24);
+        data[length++] = (byte) (value >>> 16);
+        data[length++] = (byte) (value >>> 8);
+        data[length++] = (byte) value;
+    }
+
+    private void ensure(int extra) {
+        if (length + extra > data.length) {
+            data = Arrays.copyOf(data, Math.max(data.length * 2, length + extra));
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package io.github.gaming32.pactlloopbackgui.profile;
+
+import io.github.gaming32.pactlloopbackgui.pactl.Pactl;
+import io.github.gaming32.pactlloopbackgui.pactl.PactlClient;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+
+// Applies or saves routing profiles without starting the GUI
+public final class ProfileCommand {
+    private static final String USAGE = """
+        Usage:
+          apply <profile.json> [--dry-run]   Load and unload loopbacks to match the profile
+          save <profile.json> [--exclusive]  Save the current loopbacks as a profile
+
+        Both take --server=<address> to use a server other than the default one.""";
+
+    private ProfileCommand() {
+    }
+
+    // Returns the exit status
+    public static int run(String[] args, PrintStream out, PrintStream err) {
+        if (args.length < 2) {
+            err.println(USAGE);
+            return 2;
+        }
+        final var path = Path.of(args[1]);
+        final var flags = List.of(Arrays.copyOfRange(args, 2, args.length));
+        PactlClient client = null;
+        for (final var flag : flags) {
+            if (flag.startsWith("--server=")) {
+                client = new PactlClient("cli", flag.substring(9), System.getProperty("pactl.commandWrapper"));
+            }
+        }
+        if (client == null) {
+            client = Pactl.defaultClient();
+        }
+        try {
+            return switch (args[0]) {
+                case "apply" -> apply(client, path, flags.contains("--dry-run"), out, err);
+                case "save" -> save(client, path, flags.contains("--exclusive"), out);
+                default -> {
+                    err.println(USAGE);
+                    yield 2;
+                }
+            };
+        } catch (IOException | CompletionException e) {
+            err.println("Error: " + (e instanceof CompletionException ? e.getCause() : e).getMessage());
+            return 1;
+        }
+    }
+
+    private static int apply(
+        PactlClient client, Path path, boolean dryRun, PrintStream out, PrintStream err
+    ) throws IOException {
+        final var plan = ProfileReconciler.plan(client, RoutingProfile.load(path)).join();
+        plan.problems().forEach(err::println);
+        if (plan.isEmpty()) {
+            out.println("Already up to date");
+            return plan.problems().isEmpty() ? 0 : 1;
+        }
+        plan.steps().forEach(step -> out.println(step.description()));
+        if (dryRun) {
+            return 0;
+        }
+        final var result = ProfileReconciler.apply(client, plan).join();
+        for (var i = 0; i < result.outcomes().size(); i++) {
+            final var error = result.outcomes().get(i).error();
+            if (error != null) {
+                err.println("Failed: " + plan.steps().get(i).description() + ": " + error.getMessage());
+            }
+        }
+        return result.succeeded() && plan.problems().isEmpty() ? 0 : 1;
+    }
+
+    private static int save(PactlClient client, Path path, boolean exclusive, PrintStream out) throws IOException {
+        final var profile = ProfileReconciler.capture(client, exclusive).join();
+        profile.save(path);
+        out.println("Saved " + profile.links().size() + " links to " + path);
+        return 0;
+    }
+}
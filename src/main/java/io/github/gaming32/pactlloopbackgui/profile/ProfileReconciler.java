@@ -0,0 +1,158 @@
+package io.github.gaming32.pactlloopbackgui.profile;
+
+import io.github.gaming32.pactlloopbackgui.pactl.PactlArguments;
+import io.github.gaming32.pactlloopbackgui.pactl.PactlClient;
+import io.github.gaming32.pactlloopbackgui.pactl.PactlBatchResult;
+import io.github.gaming32.pactlloopbackgui.pactl.PactlModule;
+import io.github.gaming32.pactlloopbackgui.pactl.PactlOp;
+import io.github.gaming32.pactlloopbackgui.pactl.PactlSourceOrSink;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
+
+// Works out the fewest module loads and unloads that make the live loopbacks match a profile. Loopbacks that already
+// match are left alone, so applying the same profile twice does nothing the second time.
+public final class ProfileReconciler {
+    private static final String LOOPBACK = "module-loopback";
+    private static final Predicate<String> LOOPBACK_FILTER = LOOPBACK::equals;
+
+    private ProfileReconciler() {
+    }
+
+    // Queries the current devices and loopbacks of the client's server concurrently, and plans against them
+    public static CompletableFuture<Plan> plan(PactlClient client, RoutingProfile profile) {
+        final var sources = client.supply(client::listSources);
+        final var sinks = client.supply(client::listSinks);
+        final var loopbacks = client.supply(() -> client.listModules(LOOPBACK_FILTER));
+        return CompletableFuture.allOf(sources, sinks, loopbacks).thenApply(v ->
+            plan(profile, sources.join(), sinks.join(), loopbacks.join())
+        );
+    }
+
+    public static Plan plan(
+        RoutingProfile profile, List<PactlSourceOrSink> sources, List<PactlSourceOrSink> sinks, List<PactlModule> loopbacks
+    ) {
+        final var sourceNames = new Devices(sources);
+        final var sinkNames = new Devices(sinks);
+        final var steps = new ArrayList<Step>();
+
+        final var wanted = new LinkedHashMap<Endpoints, RoutingProfile.Link>();
+        for (final var link : profile.links()) {
+            wanted.put(new Endpoints(link.source(), link.sink()), link);
+        }
+
+        // Profile links that already have a matching module. Any further module for the same link is a duplicate, and
+        // is unloaded whether or not the profile is exclusive.
+        final var matched = new HashSet<Endpoints>();
+        for (final var module : loopbacks) {
+            final var source = sourceNames.resolve(module.arguments().get("source"));
+            final var sink = sinkNames.resolve(module.arguments().get("sink"));
+            final var endpoints = new Endpoints(source, sink);
+            final var link = wanted.get(endpoints);
+            if (link != null && link.arguments().equals(new RoutingProfile.Link(source, sink, module.arguments()).arguments())) {
+                wanted.remove(endpoints);
+                matched.add(endpoints);
+                continue;
+            }
+            if (link == null && !matched.contains(endpoints) && !profile.exclusive()) continue;
+            steps.add(new Step(
+                new PactlOp.Unload(module.index()),
+                "Unload module " + module.index() + " (" + source + " -> " + sink + ")"
+            ));
+        }
+
+        final var problems = new ArrayList<String>();
+        for (final var link : wanted.values()) {
+            final var sourceIndex = sourceNames.indices.get(link.source());
+            final var sinkIndex = sinkNames.indices.get(link.sink());
+            if (sourceIndex == null || sinkIndex == null) {
+                problems.add("Skipping " + link.source() + " -> " + link.sink() + ": " +
+                    (sourceIndex == null ? "no source named " + link.source() : "no sink named " + link.sink()));
+                continue;
+            }
+            // Loaded by index, the same as links made in the GUI, since the names are only stable in the profile
+            final var arguments = new LinkedHashMap<>(link.arguments());
+            arguments.put("source", Integer.toString(sourceIndex));
+            arguments.put("sink", Integer.toString(sinkIndex));
+            steps.add(new Step(
+                new PactlOp.Load(LOOPBACK, arguments),
+                "Load " + link.source() + " -> " + link.sink() +
+                    (link.arguments().isEmpty() ? "" : " (" + PactlArguments.toString(link.arguments()) + ")")
+            ));
+        }
+        return new Plan(List.copyOf(steps), List.copyOf(problems));
+    }
+
+    // The steps don't depend on each other, so they're all run at once
+    public static CompletableFuture<PactlBatchResult> apply(PactlClient client, Plan plan) {
+        return client.applyBatch(plan.ops(), false);
+    }
+
+    // A profile of the loopbacks that currently exist
+    public static CompletableFuture<RoutingProfile> capture(PactlClient client, boolean exclusive) {
+        final var sources = client.supply(client::listSources);
+        final var sinks = client.supply(client::listSinks);
+        final var loopbacks = client.supply(() -> client.listModules(LOOPBACK_FILTER));
+        return CompletableFuture.allOf(sources, sinks, loopbacks).thenApply(v -> {
+            final var sourceNames = new Devices(sources.join());
+            final var sinkNames = new Devices(sinks.join());
+            final var links = new ArrayList<RoutingProfile.Link>();
+            for (final var module : loopbacks.join()) {
+                links.add(new RoutingProfile.Link(
+                    sourceNames.resolve(module.arguments().get("source")),
+                    sinkNames.resolve(module.arguments().get("sink")),
+                    module.arguments()
+                ));
+            }
+            return new RoutingProfile(links, exclusive);
+        });
+    }
+
+    public record Plan(List<Step> steps, List<String> problems) {
+        public List<PactlOp> ops() {
+            return steps.stream().map(Step::op).toList();
+        }
+
+        public boolean isEmpty() {
+            return steps.isEmpty();
+        }
+    }
+
+    public record Step(PactlOp op, String description) {
+    }
+
+    private record Endpoints(String source, String sink) {
+    }
+
+    private static final class Devices {
+        final Map<Integer, String> names = new HashMap<>();
+        final Map<String, Integer> indices = new HashMap<>();
+
+        Devices(List<PactlSourceOrSink> devices) {
+            for (final var device : devices) {
+                names.put(device.index(), device.name());
+                indices.put(device.name(), device.index());
+            }
+        }
+
+        // Module arguments may name a device by index or by name. Unknown indices are kept as they are, so they can
+        // still be unloaded.
+        String resolve(@Nullable String argument) {
+            if (argument == null) {
+                return "";
+            }
+            try {
+                return names.getOrDefault(Integer.parseInt(argument), argument);
+            } catch (NumberFormatException e) {
+                return argument;
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package io.github.gaming32.pactlloopbackgui.profile;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+// The loopbacks that should exist, by device name rather than index. Stored as JSON, such as
+// {"exclusive": true, "links": [{"source": "alsa_input.usb-mic", "sink": "alsa_output.pci-speakers",
+// "arguments": {"latency_msec": "20"}}]}
+// If exclusive is set, applying the profile also unloads every loopback that isn't in it.
+public record RoutingProfile(List<Link> links, boolean exclusive) {
+    private static final Gson GSON = new GsonBuilder()
+        .setPrettyPrinting()
+        .disableHtmlEscaping()
+        .create();
+
+    public RoutingProfile {
+        links = links != null ? List.copyOf(links) : List.of();
+    }
+
+    public static RoutingProfile load(Path path) throws IOException {
+        final RoutingProfile profile;
+        try (var reader = Files.newBufferedReader(path)) {
+            profile = GSON.fromJson(reader, RoutingProfile.class);
+        } catch (RuntimeException e) {
+            throw new IOException("Invalid routing profile " + path + ": " + e.getMessage(), e);
+        }
+        if (profile == null) {
+            throw new IOException("Empty routing profile " + path);
+        }
+        return profile;
+    }
+
+    public void save(Path path) throws IOException {
+        try (var writer = Files.newBufferedWriter(path)) {
+            GSON.toJson(this, writer);
+        }
+    }
+
+    // arguments are any module-loopback arguments other than source and sink. They're sorted, so that saved profiles
+    // are stable.
+    public record Link(String source, String sink, Map<String, String> arguments) {
+        public Link {
+            Objects.requireNonNull(source, "source");
+            Objects.requireNonNull(sink, "sink");
+            final var sorted = new TreeMap<String, String>(arguments != null ? arguments : Map.of());
+            sorted.remove("source");
+            sorted.remove("sink");
+            arguments = Collections.unmodifiableMap(sorted);
+        }
+    }
+}
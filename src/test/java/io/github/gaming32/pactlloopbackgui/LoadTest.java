@@ -0,0 +1,162 @@
+package io.github.gaming32.pactlloopbackgui;
+
+import io.github.gaming32.pactlloopbackgui.gui.MainPanel;
+import io.github.gaming32.pactlloopbackgui.metrics.Metrics;
+import io.github.gaming32.pactlloopbackgui.pactl.FakePactl;
+import io.github.gaming32.pactlloopbackgui.pactl.Pactl;
+import io.github.gaming32.pactlloopbackgui.pactl.PactlAsync;
+import io.github.gaming32.pactlloopbackgui.pactl.PactlBatchResult;
+import io.github.gaming32.pactlloopbackgui.pactl.PactlOp;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+// Drives MainPanel refreshes and bulk link/unlink batches against src/test/fake-pactl/pactl, and prints latency
+// percentiles and throughput for each phase. Run with ./gradlew loadTest, passing the settings below as
+// -PloadTest.<name>=<value>. pactl.* settings, such as -Ppactl.commandWrapper="sh -c", are passed through too.
+public final class LoadTest {
+    private static final int DEVICES = Integer.getInteger("loadTest.devices", 500);
+    private static final int MODULES = Integer.getInteger("loadTest.modules", 2000);
+    private static final int REFRESHES = Integer.getInteger("loadTest.refreshes", 50);
+    private static final int WARMUP = Integer.getInteger("loadTest.warmup", 5);
+    private static final int BATCH_SIZE = Integer.getInteger("loadTest.batchSize", 200);
+    private static final int DELAY_MILLIS = Integer.getInteger("loadTest.delayMillis", 0);
+    private static final int FAILURE_PERCENT = Integer.getInteger("loadTest.failurePercent", 0);
+    private static final int STDERR_LINES = Integer.getInteger("loadTest.stderrLines", 0);
+    private static final long SEED = Long.getLong("loadTest.seed", 1);
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        final var stateDir = System.getenv("FAKE_PACTL_STATE");
+        if (stateDir == null || System.getProperty("pactl.executable") == null) {
+            System.err.println("FAKE_PACTL_STATE and -Dpactl.executable must be set. Use ./gradlew loadTest instead.");
+            System.exit(2);
+        }
+        final var fake = new FakePactl(Path.of(stateDir), DEVICES, MODULES, SEED);
+        fake.generate();
+        System.out.printf(
+            "%d sources, %d sinks, %d modules; %dms delay, %d%% failures, %d lines of stderr%n",
+            DEVICES, DEVICES, MODULES, DELAY_MILLIS, FAILURE_PERCENT, STDERR_LINES
+        );
+
+        final var panel = new MainPanel(Pactl.defaultClient());
+        for (var i = 0; i < WARMUP; i++) {
+            refresh(panel);
+        }
+        fake.setFaults(DELAY_MILLIS, FAILURE_PERCENT, STDERR_LINES);
+
+        final var unchanged = new Samples("refresh (unchanged)");
+        final var changed = new Samples("refresh (modules changed)");
+        final var random = new Random(SEED);
+        final var startTime = System.nanoTime();
+        for (var i = 0; i < REFRESHES; i++) {
+            unchanged.time(() -> refresh(panel));
+            // Loaded outside the timing, so only the refresh that picks up the change is measured
+            try {
+                Pactl.loadModule("module-null-sink", Map.of("sink_name", "fake.loadTest." + i));
+            } catch (Exception e) {
+                continue;
+            }
+            changed.time(() -> refresh(panel));
+        }
+        final var refreshElapsed = System.nanoTime() - startTime;
+        unchanged.print();
+        changed.print();
+        System.out.printf(
+            "%-28s %.1f refreshes/s%n",
+            "refresh throughput", (unchanged.count + changed.count) / (refreshElapsed / 1e9)
+        );
+
+        final var loads = new ArrayList<PactlOp>();
+        for (var i = 0; i < BATCH_SIZE; i++) {
+            loads.add(new PactlOp.Load("module-loopback", Map.of(
+                "latency_msec", "20",
+                "source", Integer.toString(random.nextInt(fake.devices())),
+                "sink", Integer.toString(random.nextInt(fake.devices()))
+            )));
+        }
+        final var linked = runBatch("bulk link", loads);
+        final var unloads = new ArrayList<PactlOp>();
+        for (final var outcome : linked.outcomes()) {
+            if (outcome.error() == null) {
+                unloads.add(new PactlOp.Unload(outcome.module()));
+            }
+        }
+        runBatch("bulk unlink", unloads);
+
+        System.out.println();
+        System.out.printf("%-28s %6s %8s %8s %8s %8s%n", "metric (last minute)", "n", "p50", "p90", "p99", "max");
+        Metrics.histograms().forEach((name, histogram) -> {
+            final var stats = histogram.stats();
+            if (stats.count() == 0) return;
+            System.out.printf(
+                "%-28s %6d %8.2f %8.2f %8.2f %8.2f %s%n",
+                name, stats.windowSamples(), stats.p50(), stats.p90(), stats.p99(), stats.max(), histogram.getUnit()
+            );
+        });
+        Metrics.counters().forEach((name, counter) -> {
+            if (counter.getValue() == 0) return;
+            System.out.printf("%-28s %6d%n", name, counter.getValue());
+        });
+        System.exit(0);
+    }
+
+    private static void refresh(MainPanel panel) {
+        try {
+            panel.refresh().join();
+        } catch (RuntimeException e) {
+            // Injected failures are expected, and show up in the pactl.*.failures counters
+        }
+    }
+
+    private static PactlBatchResult runBatch(String name, List<PactlOp> ops) {
+        final var startTime = System.nanoTime();
+        final var result = PactlAsync.applyBatch(ops, false).join();
+        final var elapsed = System.nanoTime() - startTime;
+        System.out.printf(
+            "%-28s %d ops in %.1fms, %.1f ops/s, %d failed%n",
+            name, ops.size(), elapsed / 1e6, ops.size() / (elapsed / 1e9), result.failures().size()
+        );
+        return result;
+    }
+
+    private static final class Samples {
+        private final String name;
+        private final long[] nanos = new long[REFRESHES];
+        private int count;
+
+        Samples(String name) {
+            this.name = name;
+        }
+
+        void time(Runnable action) {
+            final var startTime = System.nanoTime();
+            action.run();
+            nanos[count++] = System.nanoTime() - startTime;
+        }
+
+        void print() {
+            if (count == 0) {
+                System.out.printf("%-28s no samples%n", name);
+                return;
+            }
+            final var sorted = Arrays.copyOf(nanos, count);
+            Arrays.sort(sorted);
+            System.out.printf(
+                "%-28s n=%d p50=%.2fms p90=%.2fms p99=%.2fms max=%.2fms%n",
+                name, count, percentile(sorted, 0.5), percentile(sorted, 0.9), percentile(sorted, 0.99),
+                sorted[count - 1] / 1e6
+            );
+        }
+
+        private static double percentile(long[] sorted, double p) {
+            return sorted[(int) Math.ceil(p * sorted.length) - 1] / 1e6;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package io.github.gaming32.pactlloopbackgui.pactl;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Random;
+
+// Generates the state that src/test/fake-pactl/pactl answers from: the sources, sinks and modules, and the faults to
+// inject. Every fourth module is a null sink, and the rest are loopbacks between random devices.
+public final class FakePactl {
+    private final Path state;
+    private final int devices;
+    private final int modules;
+    private final long seed;
+
+    public FakePactl(Path state, int devices, int modules, long seed) {
+        this.state = state;
+        this.devices = devices;
+        this.modules = modules;
+        this.seed = seed;
+    }
+
+    public int devices() {
+        return devices;
+    }
+
+    public void generate() throws IOException {
+        Files.createDirectories(state);
+        writeDevices(state.resolve("sources.json"), "source");
+        writeDevices(state.resolve("sinks.json"), "sink");
+
+        final var random = new Random(seed);
+        final var output = new StringBuilder();
+        for (var i = 0; i < modules; i++) {
+            if (i % 4 == 0) {
+                output.append(i).append("\tmodule-null-sink\tsink_name=fake.null.").append(i).append('\t');
+            } else {
+                output.append(i).append("\tmodule-loopback\tlatency_msec=20")
+                    .append(" source=").append(random.nextInt(devices))
+                    .append(" sink=").append(random.nextInt(devices))
+                    .append('\t');
+            }
+            output.append('\n');
+        }
+        Files.writeString(state.resolve("modules.txt"), output);
+        Files.writeString(state.resolve("next-module"), modules + "\n");
+        setFaults(0, 0, 0);
+    }
+
+    // delayMillis is added to every command, failurePercent of commands fail, and each prints stderrLines of noise
+    public void setFaults(int delayMillis, int failurePercent, int stderrLines) throws IOException {
+        Files.writeString(state.resolve("config"), String.format(
+            Locale.ROOT,
+            "delay=%s\nfailure_percent=%d\nstderr_lines=%d\n",
+            delayMillis == 0 ? "0" : String.format(Locale.ROOT, "%.3f", delayMillis / 1000.0),
+            failurePercent,
+            stderrLines
+        ));
+    }
+
+    // Close enough to real pactl output that the parser has to skip the same kinds of fields
+    private void writeDevices(Path path, String kind) throws IOException {
+        try (var writer = new JsonWriter(Files.newBufferedWriter(path, StandardCharsets.UTF_8))) {
+            writer.beginArray();
+            for (var i = 0; i < devices; i++) {
+                writer.beginObject();
+                writer.name("index").value(i);
+                writer.name("state").value("SUSPENDED");
+                writer.name("name").value("fake." + kind + "." + i);
+                writer.name("description").value("Fake " + kind + " " + i);
+                writer.name("driver").value("PipeWire");
+                writer.name("sample_specification").value("s32le 2ch 48000Hz");
+                writer.name("channel_map").value("front-left,front-right");
+                writer.name("owner_module").value(4294967295L);
+                writer.name("mute").value(false);
+                writer.name("volume").beginObject();
+                for (final var channel : new String[] {"front-left", "front-right"}) {
+                    writer.name(channel).beginObject()
+                        .name("value").value(65536)
+                        .name("value_percent").value("100%")
+                        .name("db").value("0.00 dB")
+                        .endObject();
+                }
+                writer.endObject();
+                writer.name("flags").beginArray().value("HARDWARE").value("DECIBEL_VOLUME").value("LATENCY").endArray();
+                writer.name("properties").beginObject()
+                    .name("device.api").value("alsa")
+                    .name("device.class").value("sound")
+                    .name("node.name").value("fake." + kind + "." + i)
+                    .endObject();
+                writer.endObject();
+            }
+            writer.endArray();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package io.github.gaming32.pactlloopbackgui.pactl;
+
+import org.apache.commons.io.file.PathUtils;
+
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+// Drives two PactlClients from pactl.servers against two fake servers, each with its own state directory passed
+// through --server. Checks that listings, loads and unloads only ever reach their own server, and that a slow server
+// doesn't hold up the other one's client. Run with ./gradlew multiServerTest, which check depends on, and which points
+// pactl.executable at src/test/fake-pactl/pactl. Exits non-zero on the first failed check.
+public final class MultiServerTest {
+    private static final long SLOW_DELAY_MS = 2000;
+
+    private MultiServerTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        final var directory = Files.createTempDirectory("pactl-multi-server-test");
+        try {
+            final var fakeA = new FakePactl(directory.resolve("a"), 3, 4, 1);
+            final var fakeB = new FakePactl(directory.resolve("b"), 5, 8, 2);
+            fakeA.generate();
+            fakeB.generate();
+            System.setProperty("pactl.servers", "A=" + directory.resolve("a") + "; B=" + directory.resolve("b"));
+            final var clients = PactlClient.configured();
+            check("clients", clients.size(), 2);
+            final var a = clients.get(0);
+            final var b = clients.get(1);
+            check("client names", a.name() + "," + b.name(), "A,B");
+
+            check("A sources", a.listSources().size(), 3);
+            check("B sources", b.listSources().size(), 5);
+            check("A sinks", a.listSinks().size(), 3);
+            check("B sinks", b.listSinks().size(), 5);
+            check("A modules", a.listModules().size(), 4);
+            check("B modules", b.listModules().size(), 8);
+
+            final var loaded = a.loadModule("module-loopback", Map.of("source", "0", "sink", "1"));
+            check("module loaded on A", loaded, 4);
+            check("A modules after load", a.listModules().size(), 5);
+            check("B modules after load on A", b.listModules().size(), 8);
+
+            b.unloadModule(0);
+            check("A modules after unload on B", a.listModules().size(), 5);
+            check("B modules after unload on B", b.listModules().size(), 7);
+            a.unloadModule(loaded);
+            check("A modules after unload on A", a.listModules().size(), 4);
+
+            // Each client has its own workers, so B answers while A is still waiting on its slow server
+            fakeA.setFaults((int) SLOW_DELAY_MS, 0, 0);
+            final var startTime = System.nanoTime();
+            final var slow = a.supply(a::listSinks);
+            final var fast = b.supply(b::listSinks);
+            check("B sinks while A is slow", fast.get(SLOW_DELAY_MS / 2, TimeUnit.MILLISECONDS).size(), 5);
+            check("A still waiting when B answered", slow.isDone(), false);
+            check("A sinks once it answers", slow.get(SLOW_DELAY_MS * 5, TimeUnit.MILLISECONDS).size(), 3);
+            check(
+                "A took at least its delay",
+                System.nanoTime() - startTime >= TimeUnit.MILLISECONDS.toNanos(SLOW_DELAY_MS), true
+            );
+        } finally {
+            PathUtils.deleteDirectory(directory);
+        }
+        System.out.println("Multiple servers: all checks passed");
+    }
+
+    private static void check(String what, Object actual, Object expected) {
+        if (!Objects.equals(actual, expected)) {
+            throw new AssertionError(what + ": expected " + expected + ", got " + actual);
+        }
+    }
+}
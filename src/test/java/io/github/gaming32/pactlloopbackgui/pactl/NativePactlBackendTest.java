@@ -0,0 +1,73 @@
+package io.github.gaming32.pactlloopbackgui.pactl;
+
+import io.github.gaming32.pactlloopbackgui.pactl.protocol.FakePulseServer;
+import io.github.gaming32.pactlloopbackgui.pactl.protocol.PulseCommand;
+import io.github.gaming32.pactlloopbackgui.pactl.protocol.PulseException;
+
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+// Runs NativePactlBackend against FakePulseServer over a temporary unix socket, checking the tagstruct encoding of each
+// request, the round trips of the listings and module loads, and how error replies are surfaced. Run with
+// ./gradlew nativeBackendTest, which check depends on. Exits non-zero on the first failed check.
+public final class NativePactlBackendTest {
+    private NativePactlBackendTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        final var directory = Files.createTempDirectory("pactl-native-test");
+        try (var server = new FakePulseServer(directory.resolve("native"))) {
+            server.addSource(0, "Microphone");
+            server.addSource(3, "Line In");
+            server.addSink(1, "Speakers");
+            server.addModule("module-null-sink", "sink_name=null sink_properties='device.description=\"Null Output\"'");
+            final var backend = new NativePactlBackend(server.socket());
+
+            check("sources", backend.listSources(), List.of(
+                new PactlSourceOrSink(0, "fake.0", "Microphone"),
+                new PactlSourceOrSink(3, "fake.3", "Line In")
+            ));
+            check("sinks", backend.listSinks(), List.of(new PactlSourceOrSink(1, "fake.1", "Speakers")));
+            check("modules", backend.listModules(), List.of(new PactlModule(0, "module-null-sink", Map.of(
+                "sink_name", "null",
+                "sink_properties", "device.description=\"Null Output\""
+            ))));
+
+            final var arguments = Map.of("source", "0", "sink", "1", "latency_msec", "20");
+            final var loaded = backend.loadModule("module-loopback", arguments);
+            check("loaded module index", loaded, 1);
+            check(
+                "modules after load", backend.listModules(name -> name.equals("module-loopback")),
+                List.of(new PactlModule(loaded, "module-loopback", arguments))
+            );
+            check("sink inputs after load", backend.listSinkInputs(), List.of(new PactlStream(1, 1, 10_000, 5_000)));
+            check(
+                "source outputs after load", backend.listSourceOutputs(), List.of(new PactlStream(1, 1, 10_000, 5_000))
+            );
+
+            backend.unloadModule(loaded);
+            check("modules after unload", backend.listModules(name -> name.equals("module-loopback")), List.of());
+
+            try {
+                backend.unloadModule(loaded);
+                throw new AssertionError("Unloading a missing module should fail");
+            } catch (PulseException e) {
+                check("error command", e.getCommand(), PulseCommand.UNLOAD_MODULE);
+                check("error code", e.getCode(), 5);
+            }
+            // Error replies leave the connection usable
+            check("sinks after error", backend.listSinks().size(), 1);
+        } finally {
+            Files.deleteIfExists(directory);
+        }
+        System.out.println("NativePactlBackend: all checks passed");
+    }
+
+    private static void check(String what, Object actual, Object expected) {
+        if (!Objects.equals(actual, expected)) {
+            throw new AssertionError(what + ": expected " + expected + ", got " + actual);
+        }
+    }
+}
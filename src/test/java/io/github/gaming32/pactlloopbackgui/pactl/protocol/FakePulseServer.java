@@ -0,0 +1,237 @@
+package io.github.gaming32.pactlloopbackgui.pactl.protocol;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+// An in-process server speaking just enough of the native protocol for NativePactlBackend
+public final class FakePulseServer implements Closeable {
+    private static final int SERVER_VERSION = 35;
+    private static final int ERROR_UNKNOWN_COMMAND = 2;
+    private static final int ERROR_NO_ENTITY = 5;
+
+    private final Path socket;
+    private final ServerSocketChannel server;
+    private final Map<Integer, String> sources = new LinkedHashMap<>();
+    private final Map<Integer, String> sinks = new LinkedHashMap<>();
+    private final Map<Integer, Module> modules = new LinkedHashMap<>();
+    private int nextModule;
+    private long bufferLatencyUsec = 10_000;
+    private long deviceLatencyUsec = 5_000;
+
+    public FakePulseServer(Path socket) throws IOException {
+        this.socket = socket;
+        Files.deleteIfExists(socket);
+        server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        server.bind(UnixDomainSocketAddress.of(socket));
+
+        final var thread = new Thread(this::acceptLoop, "fake-pulse-server");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public Path socket() {
+        return socket;
+    }
+
+    public synchronized void addSource(int index, String description) {
+        sources.put(index, description);
+    }
+
+    public synchronized void addSink(int index, String description) {
+        sinks.put(index, description);
+    }
+
+    public synchronized int addModule(String name, String argument) {
+        final var index = nextModule++;
+        modules.put(index, new Module(name, argument));
+        return index;
+    }
+
+    // Every module-loopback gets a sink input and a source output with these latencies
+    public synchronized void setStreamLatency(long bufferLatencyUsec, long deviceLatencyUsec) {
+        this.bufferLatencyUsec = bufferLatencyUsec;
+        this.deviceLatencyUsec = deviceLatencyUsec;
+    }
+
+    private void acceptLoop() {
+        while (server.isOpen()) {
+            try {
+                final var client = server.accept();
+                final var thread = new Thread(() -> serve(client), "fake-pulse-client");
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void serve(SocketChannel client) {
+        final var descriptor = ByteBuffer.allocate(PulseConnection.DESCRIPTOR_SIZE);
+        var version = SERVER_VERSION;
+        try (client) {
+            while (true) {
+                final var request = PulseConnection.readPacket(client, descriptor);
+                if (request == null) continue;
+                final var command = request.getU32();
+                final var tag = request.getU32();
+                if (command == PulseCommand.AUTH) {
+                    version = Math.min(SERVER_VERSION, request.getU32() & 0xffff);
+                }
+                final var reply = new TagStructWriter().putU32(PulseCommand.REPLY).putU32(tag);
+                final var error = handle(command, request, reply, version);
+                PulseConnection.writePacket(
+                    client, descriptor,
+                    error == 0 ? reply.toBuffer() : new TagStructWriter()
+                        .putU32(PulseCommand.ERROR)
+                        .putU32(tag)
+                        .putU32(error)
+                        .toBuffer()
+                );
+            }
+        } catch (IOException ignored) {
+        }
+    }
+
+    private synchronized int handle(int command, TagStructReader request, TagStructWriter reply, int version) throws IOException {
+        switch (command) {
+            case PulseCommand.AUTH -> reply.putU32(SERVER_VERSION);
+            case PulseCommand.SET_CLIENT_NAME -> reply.putU32(0);
+            case PulseCommand.GET_SOURCE_INFO_LIST -> sources.forEach(
+                (index, description) -> putSourceOrSink(reply, index, description, version, 22)
+            );
+            case PulseCommand.GET_SINK_INFO_LIST -> sinks.forEach(
+                (index, description) -> putSourceOrSink(reply, index, description, version, 21)
+            );
+            case PulseCommand.GET_MODULE_INFO_LIST -> modules.forEach((index, module) -> reply
+                .putU32(index)
+                .putString(module.name)
+                .putString(module.argument)
+                .putU32(-1)
+                .putProplist(Map.of())
+            );
+            case PulseCommand.GET_SINK_INPUT_INFO_LIST -> forEachLoopback(index -> {
+                putStreamStart(reply, index, true);
+                reply.putString("trivial").putString("fake.c");
+                if (version >= 11) {
+                    reply.putBoolean(false);
+                }
+                if (version >= 13) {
+                    reply.putProplist(Map.of());
+                }
+                if (version >= 19) {
+                    reply.putBoolean(false);
+                }
+                if (version >= 20) {
+                    reply.putBoolean(true).putBoolean(true);
+                }
+                if (version >= 21) {
+                    ServerTagStructs.putFormatInfo(reply, 1, Map.of());
+                }
+            });
+            case PulseCommand.GET_SOURCE_OUTPUT_INFO_LIST -> forEachLoopback(index -> {
+                putStreamStart(reply, index, false);
+                reply.putString("trivial").putString("fake.c");
+                if (version >= 13) {
+                    reply.putProplist(Map.of());
+                }
+                if (version >= 19) {
+                    reply.putBoolean(false);
+                }
+                if (version >= 22) {
+                    ServerTagStructs.putCVolume(reply, new int[] {0x10000, 0x10000})
+                        .putBoolean(false)
+                        .putBoolean(true)
+                        .putBoolean(true);
+                    ServerTagStructs.putFormatInfo(reply, 1, Map.of());
+                }
+            });
+            case PulseCommand.LOAD_MODULE -> reply.putU32(addModule(request.getString(), request.getString()));
+            case PulseCommand.UNLOAD_MODULE -> {
+                if (modules.remove(request.getU32()) == null) {
+                    return ERROR_NO_ENTITY;
+                }
+            }
+            default -> {
+                return ERROR_UNKNOWN_COMMAND;
+            }
+        }
+        return 0;
+    }
+
+    private void forEachLoopback(IntConsumer action) {
+        modules.forEach((index, module) -> {
+            if (module.name.equals("module-loopback")) {
+                action.accept(index);
+            }
+        });
+    }
+
+    // Everything up to and including the latencies. Sink inputs have a volume before them and source outputs don't.
+    private void putStreamStart(TagStructWriter reply, int module, boolean volume) {
+        reply.putU32(module)
+            .putString("Loopback")
+            .putU32(module)
+            .putU32(-1)
+            .putU32(0);
+        ServerTagStructs.putSampleSpec(reply, 3, 2, 48000);
+        ServerTagStructs.putChannelMap(reply, new byte[] {1, 2});
+        if (volume) {
+            ServerTagStructs.putCVolume(reply, new int[] {0x10000, 0x10000});
+        }
+        reply.putUsec(bufferLatencyUsec).putUsec(deviceLatencyUsec);
+    }
+
+    private static void putSourceOrSink(TagStructWriter reply, int index, String description, int version, int formatsVersion) {
+        reply.putU32(index)
+            .putString("fake." + index)
+            .putString(description);
+        ServerTagStructs.putSampleSpec(reply, 3, 2, 48000);
+        ServerTagStructs.putChannelMap(reply, new byte[] {1, 2}).putU32(0);
+        ServerTagStructs.putCVolume(reply, new int[] {0x10000, 0x10000})
+            .putBoolean(false)
+            .putU32(-1)
+            .putString(null)
+            .putUsec(0)
+            .putString("fake.c")
+            .putU32(0);
+        if (version >= 13) {
+            reply.putProplist(Map.of("device.description", description)).putUsec(0);
+        }
+        if (version >= 15) {
+            reply.putVolume(0x10000).putU32(0).putU32(0x10001).putU32(-1);
+        }
+        if (version >= 16) {
+            reply.putU32(1).putString("analog-output").putString("Analog Output").putU32(100);
+            if (version >= 24) {
+                reply.putU32(0);
+            }
+            if (version >= 34) {
+                reply.putString(null).putU32(0);
+            }
+            reply.putString("analog-output");
+        }
+        if (version >= formatsVersion) {
+            ServerTagStructs.putFormatInfo(reply.putU8(1), 1, Map.of());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+        Files.deleteIfExists(socket);
+    }
+
+    private record Module(String name, String argument) {
+    }
+}
@@ -0,0 +1,43 @@
+package io.github.gaming32.pactlloopbackgui.pactl.protocol;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+// The tags that only appear in server replies, which NativePactlBackend skips rather than writes
+final class ServerTagStructs {
+    private ServerTagStructs() {
+    }
+
+    static TagStructWriter putSampleSpec(TagStructWriter writer, int format, int channels, int rate) {
+        return writer.putRaw(ByteBuffer.allocate(7)
+            .put(TagStructReader.TAG_SAMPLE_SPEC)
+            .put((byte) format)
+            .put((byte) channels)
+            .putInt(rate)
+            .array()
+        );
+    }
+
+    static TagStructWriter putChannelMap(TagStructWriter writer, byte[] positions) {
+        return writer.putRaw(ByteBuffer.allocate(positions.length + 2)
+            .put(TagStructReader.TAG_CHANNEL_MAP)
+            .put((byte) positions.length)
+            .put(positions)
+            .array()
+        );
+    }
+
+    static TagStructWriter putCVolume(TagStructWriter writer, int[] volumes) {
+        final var buffer = ByteBuffer.allocate(volumes.length * 4 + 2)
+            .put(TagStructReader.TAG_CVOLUME)
+            .put((byte) volumes.length);
+        for (final var volume : volumes) {
+            buffer.putInt(volume);
+        }
+        return writer.putRaw(buffer.array());
+    }
+
+    static TagStructWriter putFormatInfo(TagStructWriter writer, int encoding, Map<String, String> properties) {
+        return writer.putRaw(new byte[] {TagStructReader.TAG_FORMAT_INFO}).putU8(encoding).putProplist(properties);
+    }
+}